@@ -41,6 +41,9 @@ export interface CourseSummary {
     title: string;
     description: string;
     thumbnailPath: string | null;
+    // Pre-sized renditions (320px and 640px wide); null until the server has generated them.
+    thumbnailCardPath: string | null;
+    thumbnailRetinaPath: string | null;
     price: number | null;
     discountPercentage: number | null;
     instructorName: string;
@@ -49,10 +52,16 @@ export interface CourseSummary {
     isEnrolled: boolean; 
      moduleCount: number; 
     enrollmentCount: number; 
+    // Only on the student's enrolled-course cards (/api/enrollments/my-courses).
+    resourceCount?: number | null;
+    completedResources?: number | null;
+    completionPercentage?: number | null;
+    remainingMinutes?: number | null;
 }
 
 export interface CourseDetail extends CourseData {
     thumbnailPath: string | null;
+    thumbnailDetailPath: string | null; // 1280px rendition
     createdAt: string;
     updatedAt: string;
     isEnrolled: boolean;
@@ -77,7 +86,33 @@ export interface CourseAnalytics {
     coursePrice: number | null;
     courseDiscount: number | null;
     dailyEnrollments: EnrollmentStat[];
-    students: EnrolledStudent[];
+}
+
+// One slice of a keyset-paginated list; pass nextCursor back as `after` for the next one.
+export interface CursorSlice<T> {
+    content: T[];
+    nextCursor: string | null;
+    hasNext: boolean;
+}
+
+// --- HELPERS ---
+
+export const uploadUrl = (path: string) => `http://localhost:8080/${path.replace(/\\/g, '/')}`;
+
+/**
+ * The card image of a course: the 320px rendition with the 640px one for 2x screens,
+ * or the original upload while the renditions are not ready.
+ */
+export function cardThumbnailSources(course: CourseSummary): { src: string; srcSet?: string } | null {
+    if (course.thumbnailCardPath) {
+        return {
+            src: uploadUrl(course.thumbnailCardPath),
+            srcSet: course.thumbnailRetinaPath
+                ? `${uploadUrl(course.thumbnailCardPath)} 1x, ${uploadUrl(course.thumbnailRetinaPath)} 2x`
+                : undefined,
+        };
+    }
+    return course.thumbnailPath ? { src: uploadUrl(course.thumbnailPath) } : null;
 }
 
 // --- API FUNCTIONS ---
@@ -129,6 +164,42 @@ export async function fetchCourseAnalytics(courseId: string): Promise<CourseAnal
     return response.json();
 }
 
+export async function fetchCourseRoster(courseId: string, query: string, after: string | null, size = 50): Promise<CursorSlice<EnrolledStudent>> {
+    const token = getToken();
+    if (!token) throw new Error("Authentication token not found.");
+
+    const params = new URLSearchParams({ size: String(size) });
+    if (query.trim()) params.set('q', query.trim());
+    if (after) params.set('after', after);
+    const response = await fetch(`http://localhost:8080/api/courses/${courseId}/roster?${params}`, {
+        headers: { Authorization: `Bearer ${token}` },
+    });
+    if (!response.ok) {
+        const errorData = await response.json().catch(() => ({}));
+        throw new Error(errorData.message || "Failed to fetch the enrolled students.");
+    }
+    return response.json();
+}
+
+// Downloads every enrolled student as a file; the server streams it, however large the course.
+export async function downloadCourseRoster(courseId: string, format: 'csv' | 'ndjson'): Promise<void> {
+    const token = getToken();
+    if (!token) throw new Error("Authentication token not found.");
+
+    const response = await fetch(`http://localhost:8080/api/courses/${courseId}/roster/export?format=${format}`, {
+        headers: { Authorization: `Bearer ${token}` },
+    });
+    if (!response.ok) {
+        throw new Error(`Failed to export the enrolled students. Server responded with status ${response.status}`);
+    }
+    const url = URL.createObjectURL(await response.blob());
+    const link = document.createElement('a');
+    link.href = url;
+    link.download = `course-${courseId}-students.${format}`;
+    link.click();
+    URL.revokeObjectURL(url);
+}
+
 
 export async function fetchMyCourses(page: number, size: number): Promise<Page<CourseSummary>> {
     const token = getToken();
@@ -268,6 +339,36 @@ export async function fetchMyEnrolledCourses(): Promise<CourseSummary[]> {
     return response.json();
 }
 
+// "Students also took": courses often taken together with this one, best first.
+export async function fetchSimilarCourses(courseId: number, limit = 6): Promise<CourseSummary[]> {
+    const token = getToken();
+    if (!token) throw new Error("Authentication token not found.");
+
+    const response = await fetch(`http://localhost:8080/api/courses/${courseId}/recommendations?limit=${limit}`, {
+        headers: { Authorization: `Bearer ${token}` },
+    });
+    if (!response.ok) {
+        const errorData = await response.json().catch(() => ({}));
+        throw new Error(errorData.message || "Failed to fetch similar courses.");
+    }
+    return response.json();
+}
+
+// Recommendations for the signed-in student, based on the courses they are enrolled in.
+export async function fetchRecommendedCourses(limit = 6): Promise<CourseSummary[]> {
+    const token = getToken();
+    if (!token) throw new Error("Authentication token not found.");
+
+    const response = await fetch(`http://localhost:8080/api/courses/recommendations?limit=${limit}`, {
+        headers: { Authorization: `Bearer ${token}` },
+    });
+    if (!response.ok) {
+        const errorData = await response.json().catch(() => ({}));
+        throw new Error(errorData.message || "Failed to fetch recommended courses.");
+    }
+    return response.json();
+}
+
 export async function enrollInCourse(courseId: number): Promise<{ message: string }> {
     const token = getToken();
     if (!token) throw new Error("Authentication token not found.");
@@ -298,4 +399,22 @@ export async function searchCourses(query: string, page: number, size: number):
         throw new Error(result.message || `Failed to search courses. Server responded with status ${response.status}`);
     }
     return response.json();
-}
\ No newline at end of file
+}
+/**
+ * Returns a short-lived absolute URL for a resource file that works without the
+ * Authorization header, so it can be used directly as an iframe src or download link.
+ */
+export async function fetchResourceFileUrl(resourceId: number, download = false): Promise<string> {
+    const token = getToken();
+    if (!token) throw new Error("Authentication token not found.");
+
+    const response = await fetch(`http://localhost:8080/api/resources/${resourceId}/link?download=${download}`, {
+        headers: { Authorization: `Bearer ${token}` },
+    });
+    if (!response.ok) {
+        const errorData = await response.json().catch(() => ({}));
+        throw new Error(errorData.message || "Failed to get the file link.");
+    }
+    const result: { url: string } = await response.json();
+    return `http://localhost:8080${result.url}`;
+}
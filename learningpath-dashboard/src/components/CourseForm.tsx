@@ -1,4 +1,5 @@
 import React, { useState, useEffect } from 'react';
+import { fetchResourceFileUrl } from '@/api/course';
 import type { CourseData, ResourceData } from '@/api/course';
 import { callGeminiAPI } from '@/api/gemini';
 
@@ -20,9 +21,10 @@ interface CourseFormProps {
   submitButtonText?: string;
 }
 
-// Define client-side types with temporary IDs for React keys
-type ClientResource = ResourceData & { id: number; filePath?: string | null };
-type ClientModule = { id: number; title: string; resources: ClientResource[] };
+// Define client-side types with temporary IDs for React keys.
+// serverId is the database id of an existing module/resource; it's sent back so the server can diff the update.
+type ClientResource = ResourceData & { id: number; serverId?: number; filePath?: string | null };
+type ClientModule = { id: number; serverId?: number; title: string; resources: ClientResource[] };
 
 let nextId = 0;
 
@@ -66,7 +68,8 @@ const CourseForm: React.FC<CourseFormProps> = ({
             const initialModules = initialData.modules?.map(m => ({
                 ...m,
                 id: nextId++,
-                resources: m.resources.map(r => ({ ...r, id: nextId++, filePath: (r as any).filePath }))
+                serverId: m.id,
+                resources: m.resources.map(r => ({ ...r, id: nextId++, serverId: r.id, filePath: (r as any).filePath }))
             })) || [];
             setModules(initialModules);
             
@@ -123,6 +126,16 @@ const CourseForm: React.FC<CourseFormProps> = ({
             setResourceFiles(prev => [...prev, ...Array.from(e.target.files!)]);
         }
     };
+
+    // Resource files are only served through short-lived signed links.
+    const openCurrentPdf = async (resourceId: number) => {
+        try {
+            window.open(await fetchResourceFileUrl(resourceId), '_blank', 'noopener,noreferrer');
+        } catch (error) {
+            console.error(error);
+            alert("Could not open the file.");
+        }
+    };
     
     const handleDiscountChange = (e: React.ChangeEvent<HTMLInputElement>) => {
         const value = e.target.value;
@@ -191,7 +204,11 @@ const CourseForm: React.FC<CourseFormProps> = ({
             description, 
             price: Number(price) || 0, 
             discountPercentage: Number(discountPercentage) || 0,
-            modules: modules.map(({ id, ...rest }) => rest) 
+            modules: modules.map(({ id, serverId, resources, ...rest }) => ({
+                ...rest,
+                id: serverId,
+                resources: resources.map(({ id: _id, serverId: resourceServerId, ...resource }) => ({ ...resource, id: resourceServerId }))
+            }))
         };
         onSubmit(courseData, thumbnail, resourceFiles);
     };
@@ -293,8 +310,8 @@ const CourseForm: React.FC<CourseFormProps> = ({
                                     
                                     {resource.resourceType === 'PDF' && (
                                         <div>
-                                            {resource.filePath && (
-                                                <a href={`http://localhost:8080/${resource.filePath.replace(/\\/g, '/')}`} target="_blank" rel="noopener noreferrer" className="text-sm font-medium text-indigo-600 hover:underline">View Current PDF</a>
+                                            {resource.filePath && resource.serverId && (
+                                                <button type="button" onClick={() => openCurrentPdf(resource.serverId!)} className="text-sm font-medium text-indigo-600 hover:underline">View Current PDF</button>
                                             )}
                                             <input type="file" onChange={handleResourceFileChange} className="mt-1 w-full p-2 border rounded-lg text-sm" />
                                             <p className="mt-1 text-xs text-slate-500">Upload a new file to replace the existing one.</p>
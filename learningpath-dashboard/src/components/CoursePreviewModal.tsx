@@ -1,5 +1,5 @@
 import React, { useState, useEffect } from 'react';
-import { fetchCourseById } from '@/api/course';
+import { fetchCourseById, fetchSimilarCourses, uploadUrl } from '@/api/course';
 import type { CourseSummary, CourseDetail } from '@/api/course';
 
 
@@ -20,6 +20,7 @@ interface CoursePreviewModalProps {
 const CoursePreviewModal: React.FC<CoursePreviewModalProps> = ({ courseSummary, onClose, onEnroll }) => {
     const [details, setDetails] = useState<CourseDetail | null>(null);
     const [isLoading, setIsLoading] = useState(true);
+    const [similarCourses, setSimilarCourses] = useState<CourseSummary[]>([]);
 
     useEffect(() => {
         setIsLoading(true);
@@ -29,8 +30,16 @@ const CoursePreviewModal: React.FC<CoursePreviewModalProps> = ({ courseSummary,
             .finally(() => setIsLoading(false));
     }, [courseSummary.id]);
 
-    const thumbnailUrl = courseSummary.thumbnailPath
-        ? `http://localhost:8080/${courseSummary.thumbnailPath.replace(/\\/g, '/')}`
+    useEffect(() => {
+        fetchSimilarCourses(courseSummary.id, 4)
+            .then(setSimilarCourses)
+            .catch(() => setSimilarCourses([]));
+    }, [courseSummary.id]);
+
+    // The 1280px rendition once the details are loaded; the card image meanwhile.
+    const thumbnailPath = details?.thumbnailDetailPath ?? courseSummary.thumbnailRetinaPath ?? courseSummary.thumbnailPath;
+    const thumbnailUrl = thumbnailPath
+        ? uploadUrl(thumbnailPath)
         : `https://placehold.co/1200x600/6366f1/e0e7ff?text=${encodeURIComponent(courseSummary.title)}`;
 
     return (
@@ -76,6 +85,20 @@ const CoursePreviewModal: React.FC<CoursePreviewModalProps> = ({ courseSummary,
                             </ul>
                         )}
                     </div>
+
+                    {similarCourses.length > 0 && (
+                        <div className="mt-6">
+                            <h3 className="text-xl font-semibold text-slate-800 border-b pb-2">Students also took</h3>
+                            <ul className="mt-4 grid grid-cols-1 sm:grid-cols-2 gap-3">
+                                {similarCourses.map(course => (
+                                    <li key={course.id} className="p-3 rounded-lg bg-slate-100">
+                                        <p className="font-semibold text-slate-800 truncate" title={course.title}>{course.title}</p>
+                                        <p className="text-xs text-slate-500">{course.instructorName}</p>
+                                    </li>
+                                ))}
+                            </ul>
+                        </div>
+                    )}
                 </div>
                 <div className="p-8 pt-4 border-t bg-slate-50 rounded-b-2xl flex-shrink-0">
                     <button onClick={() => onEnroll(courseSummary.id, courseSummary.title)} className="w-full px-8 py-3 text-base font-semibold text-white bg-indigo-600 rounded-lg shadow-md hover:bg-indigo-700 transition-colors">
@@ -1,6 +1,6 @@
 import React, { useState, useEffect, useMemo } from 'react';
 import { useParams, useNavigate, Link } from 'react-router-dom';
-import { fetchCourseAnalytics } from '@/api/course';
+import { downloadCourseRoster, fetchCourseAnalytics, fetchCourseRoster } from '@/api/course';
 import type { CourseAnalytics, EnrolledStudent } from '@/api/course';
 import DashboardNavbar from "@/components/DashboardNavbar";
 import { 
@@ -34,6 +34,10 @@ const CourseAnalyticsPage = () => {
     const [analytics, setAnalytics] = useState<CourseAnalytics | null>(null);
     const [isLoading, setIsLoading] = useState(true);
     const [studentSearch, setStudentSearch] = useState('');
+    const [students, setStudents] = useState<EnrolledStudent[]>([]);
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [isRosterLoading, setIsRosterLoading] = useState(false);
+    const [exportError, setExportError] = useState<string | null>(null);
 
     useEffect(() => {
         if (!courseId) {
@@ -47,9 +51,45 @@ const CourseAnalyticsPage = () => {
             .finally(() => setIsLoading(false));
     }, [courseId, navigate]);
 
+    // The roster is paged and searched on the server; a new search starts again from the first slice.
+    useEffect(() => {
+        if (!courseId) return;
+        let cancelled = false;
+        const timer = setTimeout(() => {
+            setIsRosterLoading(true);
+            fetchCourseRoster(courseId, studentSearch, null)
+                .then(slice => {
+                    if (cancelled) return;
+                    setStudents(slice.content);
+                    setNextCursor(slice.hasNext ? slice.nextCursor : null);
+                })
+                .catch(() => { if (!cancelled) setStudents([]); })
+                .finally(() => { if (!cancelled) setIsRosterLoading(false); });
+        }, 300);
+        return () => { cancelled = true; clearTimeout(timer); };
+    }, [courseId, studentSearch]);
+
+    const loadMoreStudents = () => {
+        if (!courseId || !nextCursor) return;
+        setIsRosterLoading(true);
+        fetchCourseRoster(courseId, studentSearch, nextCursor)
+            .then(slice => {
+                setStudents(current => [...current, ...slice.content]);
+                setNextCursor(slice.hasNext ? slice.nextCursor : null);
+            })
+            .catch(() => setNextCursor(null))
+            .finally(() => setIsRosterLoading(false));
+    };
+
+    const exportStudents = (format: 'csv' | 'ndjson') => {
+        if (!courseId) return;
+        setExportError(null);
+        downloadCourseRoster(courseId, format).catch(err => setExportError(err.message));
+    };
+
     // --- Memoized Data Processing for Charts & Tables ---
-    const { chartData, totalRevenue, avgEnrollments, filteredStudents } = useMemo(() => {
-        if (!analytics) return { chartData: [], totalRevenue: 0, avgEnrollments: '0.0', filteredStudents: [] };
+    const { chartData, totalRevenue, avgEnrollments } = useMemo(() => {
+        if (!analytics) return { chartData: [], totalRevenue: 0, avgEnrollments: '0.0' };
 
         const dailyEnrollments = analytics.dailyEnrollments.map(stat => ({
             date: new Date(stat.date).toLocaleDateString('en-US', { month: 'short', day: 'numeric' }),
@@ -62,13 +102,8 @@ const CourseAnalyticsPage = () => {
             ? (analytics.totalEnrollments / analytics.dailyEnrollments.length).toFixed(1)
             : '0.0';
 
-        const students = analytics.students.filter(student => 
-            student.fullName.toLowerCase().includes(studentSearch.toLowerCase()) ||
-            student.email.toLowerCase().includes(studentSearch.toLowerCase())
-        );
-
-        return { chartData: dailyEnrollments, totalRevenue: revenue, avgEnrollments: avg, filteredStudents: students };
-    }, [analytics, studentSearch]);
+        return { chartData: dailyEnrollments, totalRevenue: revenue, avgEnrollments: avg };
+    }, [analytics]);
 
 
     if (isLoading) return <div className="text-center p-10">Loading Analytics...</div>;
@@ -138,14 +173,23 @@ const CourseAnalyticsPage = () => {
                 <div className="mt-8 bg-white p-6 rounded-2xl shadow-lg">
                     <div className="flex flex-col sm:flex-row justify-between items-start sm:items-center">
                         <h3 className="text-xl font-semibold text-slate-800">Enrolled Students</h3>
-                        <input 
-                            type="text"
-                            placeholder="Search students..."
-                            value={studentSearch}
-                            onChange={e => setStudentSearch(e.target.value)}
-                            className="mt-4 sm:mt-0 w-full sm:w-64 px-4 py-2 border border-slate-300 rounded-lg"
-                        />
+                        <div className="mt-4 sm:mt-0 flex flex-col sm:flex-row gap-2 w-full sm:w-auto">
+                            <input 
+                                type="text"
+                                placeholder="Search students..."
+                                value={studentSearch}
+                                onChange={e => setStudentSearch(e.target.value)}
+                                className="w-full sm:w-64 px-4 py-2 border border-slate-300 rounded-lg"
+                            />
+                            <button onClick={() => exportStudents('csv')} className="px-4 py-2 text-sm font-semibold text-indigo-600 border border-indigo-200 rounded-lg hover:bg-indigo-50">
+                                Export CSV
+                            </button>
+                            <button onClick={() => exportStudents('ndjson')} className="px-4 py-2 text-sm font-semibold text-indigo-600 border border-indigo-200 rounded-lg hover:bg-indigo-50">
+                                Export JSON
+                            </button>
+                        </div>
                     </div>
+                    {exportError && <p className="mt-2 text-sm text-red-600">{exportError}</p>}
                     <div className="mt-4 overflow-x-auto">
                         <table className="w-full text-sm text-left text-slate-500">
                             <thead className="text-xs text-slate-700 uppercase bg-slate-50">
@@ -156,7 +200,7 @@ const CourseAnalyticsPage = () => {
                                 </tr>
                             </thead>
                             <tbody>
-                                {filteredStudents.map(student => (
+                                {students.map(student => (
                                     <tr key={student.userId} className="bg-white border-b hover:bg-slate-50">
                                         <th scope="row" className="px-6 py-4 font-medium text-slate-900 whitespace-nowrap">{student.fullName}</th>
                                         <td className="px-6 py-4">{student.email}</td>
@@ -165,7 +209,14 @@ const CourseAnalyticsPage = () => {
                                 ))}
                             </tbody>
                         </table>
-                        {filteredStudents.length === 0 && <p className="text-center text-slate-500 py-8">No students found matching your search.</p>}
+                        {!isRosterLoading && students.length === 0 && <p className="text-center text-slate-500 py-8">No students found matching your search.</p>}
+                        {nextCursor && (
+                            <div className="text-center mt-4">
+                                <button onClick={loadMoreStudents} disabled={isRosterLoading} className="px-4 py-2 text-sm font-semibold text-indigo-600 hover:underline disabled:opacity-50">
+                                    {isRosterLoading ? 'Loading...' : 'Load more'}
+                                </button>
+                            </div>
+                        )}
                     </div>
                 </div>
             </main>
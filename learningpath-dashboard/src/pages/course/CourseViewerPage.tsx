@@ -1,8 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useParams, useNavigate, Link } from 'react-router-dom';
-import { fetchCourseById } from '@/api/course';
+import { fetchCourseById, fetchResourceFileUrl } from '@/api/course';
 import type { CourseDetail, ResourceData } from '@/api/course';
-import { getToken } from '@/hooks/useAuth';
 import DashboardNavbar from "@/components/DashboardNavbar";
 
 // A helper to get a specific icon SVG based on resource type
@@ -36,7 +35,7 @@ const CourseViewerPage = () => {
     const [course, setCourse] = useState<CourseDetail | null>(null);
     const [activeResource, setActiveResource] = useState<ResourceData | null>(null);
     const [isLoading, setIsLoading] = useState(true);
-    const [pdfBlobUrl, setPdfBlobUrl] = useState<string | null>(null);
+    const [pdfUrl, setPdfUrl] = useState<string | null>(null);
     const [isSidebarOpen, setIsSidebarOpen] = useState(false);
 
     useEffect(() => {
@@ -57,31 +56,15 @@ const CourseViewerPage = () => {
     }, [courseId, navigate]);
 
     useEffect(() => {
-        let objectUrl: string | null = null;
-        const loadPdf = async () => {
-            if (activeResource?.resourceType === 'PDF' && activeResource.id) {
-                const token = getToken();
-                if (!token) return;
-                try {
-                    const response = await fetch(`http://localhost:8080/api/resources/${activeResource.id}/view`, {
-                        headers: { Authorization: `Bearer ${token}` }
-                    });
-                    if (!response.ok) throw new Error('Failed to load PDF resource.');
-                    const blob = await response.blob();
-                    objectUrl = URL.createObjectURL(blob);
-                    setPdfBlobUrl(objectUrl);
-                } catch (error) {
-                    console.error(error);
-                    setPdfBlobUrl(null);
-                }
-            }
-        };
-        loadPdf();
-        return () => {
-            if (objectUrl) {
-                URL.revokeObjectURL(objectUrl);
-            }
-        };
+        let cancelled = false;
+        setPdfUrl(null);
+        if (activeResource?.resourceType === 'PDF' && activeResource.id) {
+            // The signed URL lets the browser's PDF viewer load the file itself, page ranges included.
+            fetchResourceFileUrl(activeResource.id)
+                .then(url => { if (!cancelled) setPdfUrl(url); })
+                .catch(error => console.error(error));
+        }
+        return () => { cancelled = true; };
     }, [activeResource]);
 
     if (isLoading) return <div className="flex items-center justify-center h-screen">Loading Your Course...</div>;
@@ -91,8 +74,8 @@ const CourseViewerPage = () => {
         if (!activeResource) return <div className="flex items-center justify-center h-full bg-slate-100 rounded-lg"><p>Select a resource to begin.</p></div>;
         switch (activeResource.resourceType) {
             case 'PDF':
-                return pdfBlobUrl ? 
-                    <iframe src={pdfBlobUrl} className="w-full h-full border-0" title={activeResource.title}></iframe> :
+                return pdfUrl ? 
+                    <iframe src={pdfUrl} className="w-full h-full border-0" title={activeResource.title}></iframe> :
                     <div className="flex items-center justify-center h-full">Loading PDF...</div>;
             case 'VIDEO':
                 const embedUrl = convertToEmbedUrl(activeResource.url || '');
@@ -115,22 +98,15 @@ const CourseViewerPage = () => {
     };
     
     const handleDownload = async (resource: ResourceData) => {
-        const token = getToken();
-        if (!token || !resource.id) return;
+        if (!resource.id) return;
         try {
-            const response = await fetch(`http://localhost:8080/api/resources/${resource.id}/download`, {
-                headers: { Authorization: `Bearer ${token}` }
-            });
-            if (!response.ok) throw new Error('Download failed.');
-            const blob = await response.blob();
-            const url = window.URL.createObjectURL(blob);
+            const url = await fetchResourceFileUrl(resource.id, true);
             const a = document.createElement('a');
             a.href = url;
             a.download = resource.title || 'download.pdf';
             document.body.appendChild(a);
             a.click();
             a.remove();
-            window.URL.revokeObjectURL(url);
         } catch (error) {
             console.error("Download error:", error);
             alert("Could not download the file.");
@@ -1,23 +1,38 @@
 import React, { useState, useEffect } from 'react';
 import { Link } from 'react-router-dom';
-import { fetchMyEnrolledCourses } from '@/api/course';
+import { fetchMyEnrolledCourses, cardThumbnailSources } from '@/api/course';
 import type { CourseSummary } from '@/api/course';
 import DashboardNavbar from '@/components/DashboardNavbar';
 import MessageModal from '@/components/MessageModal';
 
+const formatRemaining = (minutes: number) =>
+    minutes < 60 ? `${minutes} min` : `${Math.floor(minutes / 60)} h ${minutes % 60} min`;
+
 const EnrolledCourseCard = ({ course }: { course: CourseSummary }) => {
-    const thumbnailUrl = course.thumbnailPath
-        ? `http://localhost:8080/${course.thumbnailPath.replace(/\\/g, '/')}`
+    const thumbnail = cardThumbnailSources(course);
+    const thumbnailUrl = thumbnail
+        ? thumbnail.src
         : `https://placehold.co/600x400/16a34a/e0e7ff?text=${encodeURIComponent(course.title)}`;
 
     return (
         <div className="bg-white rounded-2xl shadow-lg overflow-hidden transition-all duration-300 hover:shadow-2xl hover:-translate-y-1 group">
             <div className="overflow-hidden">
-                <img src={thumbnailUrl} alt={course.title} className="w-full h-48 object-cover transition-transform duration-500 group-hover:scale-110" />
+                <img src={thumbnailUrl} srcSet={thumbnail?.srcSet} alt={course.title} className="w-full h-48 object-cover transition-transform duration-500 group-hover:scale-110" />
             </div>
             <div className="p-6 flex flex-col">
                 <p className="text-xs font-semibold text-green-600">{course.instructorName}</p>
                 <h4 className="font-bold text-xl text-slate-900 truncate mt-1" title={course.title}>{course.title}</h4>
+                {course.completionPercentage != null && (
+                    <div className="mt-4">
+                        <div className="flex justify-between text-xs text-slate-500">
+                            <span>{course.completionPercentage}% complete</span>
+                            {course.remainingMinutes ? <span>{formatRemaining(course.remainingMinutes)} left</span> : null}
+                        </div>
+                        <div className="mt-1 h-2 bg-slate-100 rounded-full overflow-hidden">
+                            <div className="h-full bg-green-600 rounded-full" style={{ width: `${course.completionPercentage}%` }} />
+                        </div>
+                    </div>
+                )}
                 <div className="mt-6 flex-grow flex items-end">
                     <Link to={`/learn/course/${course.id}`} className="w-full text-center px-5 py-3 text-sm font-semibold text-white bg-green-600 rounded-lg shadow-md hover:bg-green-700">
                         Continue Learning
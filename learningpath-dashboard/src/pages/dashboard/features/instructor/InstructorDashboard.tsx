@@ -1,6 +1,6 @@
 import React, { useState, useEffect, useRef } from 'react';
 import { Link } from 'react-router-dom';
-import { deleteCourse } from '@/api/course';
+import { deleteCourse, cardThumbnailSources } from '@/api/course';
 import type { CourseSummary } from '@/api/course';
 import MessageModal from '@/components/MessageModal';
 
@@ -67,8 +67,9 @@ const ActionMenu = ({ course, onDelete }: { course: CourseSummary, onDelete: (id
 };
 
 const CourseCard: React.FC<{ course: CourseSummary, onDelete: (id: number, title: string) => void }> = ({ course, onDelete }) => {
-    const thumbnailUrl = course.thumbnailPath
-        ? `http://localhost:8080/${course.thumbnailPath.replace(/\\/g, '/')}`
+    const thumbnail = cardThumbnailSources(course);
+    const thumbnailUrl = thumbnail
+        ? thumbnail.src
         : `https://placehold.co/600x400/1e293b/e2e8f0?text=${encodeURIComponent(course.title)}`;
 
     const originalPrice = course.price;
@@ -84,7 +85,7 @@ const CourseCard: React.FC<{ course: CourseSummary, onDelete: (id: number, title
         <div className="bg-white rounded-2xl shadow-lg transition-all duration-300 hover:shadow-2xl hover:-translate-y-1 group">
             <div className="relative overflow-hidden rounded-t-2xl">
                 <Link to={`/edit-course/${course.id}`} className="block">
-                    <img src={thumbnailUrl} alt={course.title} className="w-full h-48 object-cover transition-transform duration-500 group-hover:scale-110" onError={(e) => (e.currentTarget.src = `https://placehold.co/600x400/e0e7ff/4338ca?text=Image+Error`)} />
+                    <img src={thumbnailUrl} srcSet={thumbnail?.srcSet} alt={course.title} className="w-full h-48 object-cover transition-transform duration-500 group-hover:scale-110" onError={(e) => { e.currentTarget.srcset = ''; e.currentTarget.src = `https://placehold.co/600x400/e0e7ff/4338ca?text=Image+Error`; }} />
                 </Link>
                 <div className="absolute top-3 left-3 px-2.5 py-1 text-xs font-bold text-blue-800 bg-blue-100 rounded-full">
                     DRAFT
@@ -1,5 +1,6 @@
 import React, { useState, useEffect } from 'react';
 import { Link } from 'react-router-dom';
+import { cardThumbnailSources, fetchRecommendedCourses } from '@/api/course';
 import type { CourseSummary } from '@/api/course';
 import MessageModal from '@/components/MessageModal';
 
@@ -30,14 +31,15 @@ type CourseCardProps = {
 };
 
 const CourseCard: React.FC<CourseCardProps> = ({ course, onHover, isActive }) => {
-    const thumbnailUrl = course.thumbnailPath
-        ? `http://localhost:8080/${course.thumbnailPath.replace(/\\/g, '/')}`
+    const thumbnail = cardThumbnailSources(course);
+    const thumbnailUrl = thumbnail
+        ? thumbnail.src
         : `https://placehold.co/400x300/6366f1/e0e7ff?text=${encodeURIComponent(course.title)}`;
 
     return (
         <Link to={`/learn/course/${course.id}`} onMouseEnter={() => onHover(course)} className="block group">
             <div className={`aspect-[4/3] rounded-2xl overflow-hidden transition-all duration-300 ${isActive ? 'ring-4 ring-indigo-500 ring-offset-2' : 'ring-0'}`}>
-                <img src={thumbnailUrl} alt={course.title} className="w-full h-full object-cover transition-transform duration-500 group-hover:scale-110" />
+                <img src={thumbnailUrl} srcSet={thumbnail?.srcSet} alt={course.title} className="w-full h-full object-cover transition-transform duration-500 group-hover:scale-110" />
             </div>
             <h3 className="mt-4 font-bold text-slate-800 truncate group-hover:text-indigo-600" title={course.title}>{course.title}</h3>
         </Link>
@@ -130,6 +132,14 @@ interface StudentDashboardProps {
 export default function StudentDashboard({ fullName, courses, isLoading, currentPage, totalPages, onPageChange }: StudentDashboardProps) {
     const [modalState, setModalState] = useState({ isVisible: false, message: '', type: 'info' as 'info' | 'success' | 'error' });
     const [hoveredCourse, setHoveredCourse] = useState<CourseSummary | null>(null);
+    const [recommendedCourses, setRecommendedCourses] = useState<CourseSummary[]>([]);
+
+    // Recommendations don't depend on the catalog page, so they load once.
+    useEffect(() => {
+        fetchRecommendedCourses(6)
+            .then(setRecommendedCourses)
+            .catch(() => setRecommendedCourses([]));
+    }, []);
 
     useEffect(() => {
         if (!isLoading && courses.length > 0 && window.innerWidth >= 1024) {
@@ -147,6 +157,23 @@ export default function StudentDashboard({ fullName, courses, isLoading, current
             <div className="p-4 sm:p-6 md:p-8">
                 <h1 className="text-3xl font-bold text-slate-900">Course Catalog</h1>
                 <p className="mt-1 text-slate-600">Welcome, {fullName}. Hover over a course to see details, or click to view.</p>
+
+                {recommendedCourses.length > 0 && (
+                    <section className="mt-8">
+                        <h2 className="text-xl font-semibold text-slate-800">Recommended for you</h2>
+                        <p className="text-sm text-slate-500">Students who took your courses also took these.</p>
+                        <div className="mt-4 grid grid-cols-2 sm:grid-cols-3 lg:grid-cols-6 gap-6">
+                            {recommendedCourses.map(course => (
+                                <CourseCard
+                                    key={course.id}
+                                    course={course}
+                                    onHover={setHoveredCourse}
+                                    isActive={hoveredCourse?.id === course.id}
+                                />
+                            ))}
+                        </div>
+                    </section>
+                )}
                 
                 <div className="mt-8 grid grid-cols-1 lg:grid-cols-2 gap-8 items-start">
                     <div className="grid grid-cols-1 sm:grid-cols-2 md:grid-cols-3 gap-x-6 gap-y-10">
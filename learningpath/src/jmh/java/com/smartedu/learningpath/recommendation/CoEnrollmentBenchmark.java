@@ -0,0 +1,123 @@
+package com.smartedu.learningpath.recommendation;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The co-enrollment matrix on a synthetic catalog: 100,000 students enrolled in 5 to 15 of
+ * 5,000 courses each (about 1M enrollments), with popularity skewed toward a few courses the
+ * way real catalogs are. Run with ./gradlew jmh.
+ *
+ * fullBuild is what startup and the periodic rebuild cost, by pool size; addEnrollment is the
+ * in-place update of one new enrollment including the recomputed neighbors; similarCourses is a
+ * read on the request path. Only fullBuild takes the pool size as a parameter, the other two run
+ * against a matrix built once per iteration, so the enrollments they add don't pile up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class CoEnrollmentBenchmark {
+
+    private static final int STUDENTS = 100_000;
+    private static final int COURSES = 5_000;
+    private static final int NEIGHBORS = 20;
+
+    private Long2ObjectOpenHashMap<long[]> enrollments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        enrollments = generate(new SplittableRandom(42));
+    }
+
+    @State(Scope.Benchmark)
+    public static class BuildPool {
+
+        @Param({"1", "2", "4", "8"})
+        public int parallelism;
+
+        private ForkJoinPool pool;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Built {
+
+        private CoEnrollmentMatrix matrix;
+        private Long2ObjectOpenHashMap<Neighbors> neighbors;
+        private final SplittableRandom random = new SplittableRandom(7);
+
+        @Setup(Level.Iteration)
+        public void setUp(CoEnrollmentBenchmark benchmark) {
+            // addEnrollment changes the matrix's own lists, so it gets a copy of them.
+            Long2ObjectOpenHashMap<long[]> copy = new Long2ObjectOpenHashMap<>(benchmark.enrollments.size());
+            benchmark.enrollments.forEach((student, courses) -> copy.put(student.longValue(), courses.clone()));
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            matrix = CoEnrollmentMatrix.build(copy, pool);
+            neighbors = matrix.topNeighborsOfAll(NEIGHBORS, pool);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Long2ObjectOpenHashMap<Neighbors> fullBuild(BuildPool buildPool) {
+        // build() only reads the lists, so the shared ones can be reused across invocations.
+        return CoEnrollmentMatrix.build(enrollments, buildPool.pool).topNeighborsOfAll(NEIGHBORS, buildPool.pool);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int addEnrollment(Built built) {
+        // A student who already has a few courses takes one more. Drawing again until the course
+        // is new to them keeps already-counted enrollments, which cost next to nothing, out of it.
+        LongOpenHashSet changed = new LongOpenHashSet();
+        while (!built.matrix.addEnrollment(built.random.nextLong(STUDENTS), skewedCourse(built.random), changed)) {
+            // Drawn a course the student already has.
+        }
+        int total = 0;
+        for (long course : changed) {
+            total += built.matrix.topNeighbors(course, NEIGHBORS).size();
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Neighbors similarCourses(Built built) {
+        return built.neighbors.getOrDefault(skewedCourse(built.random), Neighbors.NONE);
+    }
+
+    private static Long2ObjectOpenHashMap<long[]> generate(SplittableRandom random) {
+        Long2ObjectOpenHashMap<long[]> enrollments = new Long2ObjectOpenHashMap<>(STUDENTS);
+        for (long student = 0; student < STUDENTS; student++) {
+            int target = 5 + random.nextInt(11);
+            LongOpenHashSet courses = new LongOpenHashSet(target);
+            while (courses.size() < target) {
+                courses.add(skewedCourse(random));
+            }
+            long[] sorted = courses.toLongArray();
+            Arrays.sort(sorted);
+            enrollments.put(student, sorted);
+        }
+        return enrollments;
+    }
+
+    // Squaring a uniform number puts most enrollments in the low course ids.
+    private static long skewedCourse(SplittableRandom random) {
+        double u = random.nextDouble();
+        return (long) (COURSES * u * u);
+    }
+}
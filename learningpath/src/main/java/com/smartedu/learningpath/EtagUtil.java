@@ -0,0 +1,23 @@
+package com.smartedu.learningpath;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+@UtilityClass
+public class EtagUtil {
+
+    /**
+     * Builds a strong ETag (quoted hex digest) from everything a response depends on.
+     * Two calls with the same parts always produce the same tag.
+     */
+    public static String strongEtag(Object... parts) {
+        String joined = Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        return "\"" + DigestUtils.md5DigestAsHex(joined.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -24,6 +24,12 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
 
+    // Signed file URLs carry their own authorization; loading the user here would cost a query per range request.
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return request.getServletPath().startsWith("/api/files/");
+    }
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
@@ -1,19 +1,140 @@
 package com.smartedu.learningpath.config;
 
+import com.smartedu.learningpath.service.FileDeliveryService;
+import com.smartedu.learningpath.service.FileStorageService;
+import com.smartedu.learningpath.storage.ObjectStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
 
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Configuration
+@RequiredArgsConstructor
 public class MvcConfig implements WebMvcConfigurer {
 
+    private final FileStorageService fileStorageService;
+    private final ObjectStorage storage;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // This makes the 'uploads' directory accessible via HTTP
-        String uploadDir = Paths.get("uploads").toFile().getAbsolutePath();
+        // This makes course thumbnails accessible via HTTP at their stored paths (uploads/...).
+        // Every stored path is versioned by its name: uploads get a fresh UUID name and renditions
+        // are named by their hash, so the content behind a URL never changes and can be cached for good.
+        // There is no resource location: the resolver below reads from the ObjectStorage.
         registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:/" + uploadDir + "/");
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .resourceChain(false)
+                .addResolver(new ContentStoreResourceResolver());
+    }
+
+    /**
+     * Serves course thumbnails, /uploads/{courseId}/thumbnail/{file}, and their renditions,
+     * /uploads/{courseId}/renditions/{file}, through the content store and the ObjectStorage,
+     * where the stored paths are only logical (files from before the store are still found at
+     * their own path). Thumbnails are public; resource files are only served through signed URLs.
+     * Clients that accept gzip get the precompressed variant when there is one.
+     */
+    private class ContentStoreResourceResolver extends AbstractResourceResolver {
+
+        private static final Pattern THUMBNAIL_PATH = Pattern.compile("\\d+/(thumbnail|renditions)/[^/]+");
+
+        @Override
+        protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+                                                   List<? extends Resource> locations, ResourceResolverChain chain) {
+            if (!THUMBNAIL_PATH.matcher(requestPath).matches() || requestPath.contains("..")) {
+                return null; // no resource files, staging area or raw blobs
+            }
+            FileStorageService.StoredContent content;
+            try {
+                content = fileStorageService.locate("uploads/" + requestPath);
+            } catch (RuntimeException e) {
+                return null; // not found
+            }
+            boolean gzip = content.gzipKey() != null && request != null && FileDeliveryService.acceptsGzip(request);
+            return new StoredFileResource(content, gzip);
+        }
+
+        @Override
+        protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+                                                ResourceResolverChain chain) {
+            return chain.resolveUrlPath(resourceUrlPath, locations);
+        }
+    }
+
+    /**
+     * A stored file, or its gzip variant, that answers length and modification time from the
+     * cached metadata instead of the storage, and reports the logical file name so the
+     * content type doesn't depend on how the file is stored.
+     */
+    private class StoredFileResource extends AbstractResource implements HttpResource {
+
+        private final FileStorageService.StoredContent content;
+        private final boolean gzip;
+
+        StoredFileResource(FileStorageService.StoredContent content, boolean gzip) {
+            this.content = content;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return storage.get(gzip ? content.gzipKey() : content.key());
+        }
+
+        @Override
+        public String getDescription() {
+            return "stored file [" + (gzip ? content.gzipKey() : content.key()) + "]";
+        }
+
+        @Override
+        public String getFilename() {
+            return content.filename();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isReadable() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return gzip ? content.gzipSize() : content.size();
+        }
+
+        @Override
+        public long lastModified() {
+            return content.lastModified();
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            if (content.gzipKey() != null) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (gzip) {
+                headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return headers;
+        }
     }
 }
@@ -0,0 +1,86 @@
+package com.smartedu.learningpath.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Applies the PostgreSQL-specific schema pieces that JPA annotations cannot express
+ * (generated columns, GIN indexes, ...). Hibernate's ddl-auto creates the tables first,
+ * so every statement here must be idempotent.
+ */
+@Component
+@RequiredArgsConstructor
+public class SchemaInitializer implements ApplicationRunner {
+
+    private static final List<String> STATEMENTS = List.of(
+            // Weighted full-text document for course search: title ranks above description.
+            // A stored generated column is kept up to date by PostgreSQL on every insert/update.
+            "ALTER TABLE courses ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+                    "GENERATED ALWAYS AS (" +
+                    "setweight(to_tsvector('english', coalesce(title, '')), 'A') || " +
+                    "setweight(to_tsvector('english', coalesce(description, '')), 'B')" +
+                    ") STORED",
+            "CREATE INDEX IF NOT EXISTS idx_courses_search_vector ON courses USING GIN (search_vector)",
+            // Backfills the denormalized enrollment counters of courses that have none yet. Existing rows
+            // are left alone: other running nodes may still hold unflushed deltas on top of them, so
+            // overwriting them with a recount would count those enrollments twice. Counters that drifted
+            // after an unclean shutdown must be recounted while no node is running.
+            "INSERT INTO course_enrollment_counters (course_id, enrollment_count) " +
+                    "SELECT c.id, count(e.id) FROM courses c LEFT JOIN enrollments e ON e.course_id = c.id GROUP BY c.id " +
+                    "ON CONFLICT (course_id) DO NOTHING",
+            // Same for the daily enrollment rollup behind the analytics chart.
+            "INSERT INTO course_daily_enrollments (course_id, enrollment_day, enrollment_count) " +
+                    "SELECT e.course_id, CAST(e.enrollment_date AS date), count(*) FROM enrollments e " +
+                    "GROUP BY e.course_id, CAST(e.enrollment_date AS date) " +
+                    "ON CONFLICT (course_id, enrollment_day) DO NOTHING",
+            // And for the completion rollups behind the enrolled-course cards.
+            "INSERT INTO course_content_totals (course_id, resource_count, estimated_minutes) " +
+                    "SELECT c.id, count(r.id), COALESCE(sum(r.estimated_time_to_complete_minutes), 0) " +
+                    "FROM courses c LEFT JOIN modules m ON m.course_id = c.id LEFT JOIN resources r ON r.module_id = m.id " +
+                    "GROUP BY c.id " +
+                    "ON CONFLICT (course_id) DO UPDATE SET resource_count = EXCLUDED.resource_count, " +
+                    "estimated_minutes = EXCLUDED.estimated_minutes " +
+                    "WHERE (course_content_totals.resource_count, course_content_totals.estimated_minutes) " +
+                    "<> (EXCLUDED.resource_count, EXCLUDED.estimated_minutes)",
+            "INSERT INTO student_course_progress (student_id, course_id, completed_resources, completed_minutes) " +
+                    "SELECT sp.student_id, m.course_id, count(*), COALESCE(sum(r.estimated_time_to_complete_minutes), 0) " +
+                    "FROM student_progress sp JOIN resources r ON r.id = sp.resource_id JOIN modules m ON m.id = r.module_id " +
+                    "WHERE sp.is_completed GROUP BY sp.student_id, m.course_id " +
+                    "ON CONFLICT (student_id, course_id) DO UPDATE SET completed_resources = EXCLUDED.completed_resources, " +
+                    "completed_minutes = EXCLUDED.completed_minutes " +
+                    "WHERE (student_course_progress.completed_resources, student_course_progress.completed_minutes) " +
+                    "<> (EXCLUDED.completed_resources, EXCLUDED.completed_minutes)",
+            // Modules and resources moved from IDENTITY columns to pooled sequences: start the
+            // sequences past the ids that already exist (no-op once they are ahead).
+            "SELECT setval('modules_seq', t.max_id) FROM (SELECT max(id) AS max_id FROM modules) t " +
+                    "WHERE t.max_id > (SELECT last_value FROM modules_seq)",
+            "SELECT setval('resources_seq', t.max_id) FROM (SELECT max(id) AS max_id FROM resources) t " +
+                    "WHERE t.max_id > (SELECT last_value FROM resources_seq)",
+            // Progress rows go with their resource. Tables created before the foreign key had
+            // ON DELETE CASCADE keep the old constraint under ddl-auto update: replace it.
+            "DO $$ DECLARE fk record; BEGIN " +
+                    "FOR fk IN SELECT conname FROM pg_constraint WHERE conrelid = 'student_progress'::regclass " +
+                    "AND confrelid = 'resources'::regclass AND contype = 'f' AND confdeltype <> 'c' LOOP " +
+                    "EXECUTE format('ALTER TABLE student_progress DROP CONSTRAINT %I', fk.conname); " +
+                    "END LOOP; " +
+                    "IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'student_progress'::regclass " +
+                    "AND confrelid = 'resources'::regclass AND contype = 'f') THEN " +
+                    "ALTER TABLE student_progress ADD CONSTRAINT fk_student_progress_resource " +
+                    "FOREIGN KEY (resource_id) REFERENCES resources (id) ON DELETE CASCADE; " +
+                    "END IF; END $$"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String statement : STATEMENTS) {
+            jdbcTemplate.execute(statement);
+        }
+    }
+}
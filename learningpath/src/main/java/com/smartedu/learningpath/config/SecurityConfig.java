@@ -1,6 +1,7 @@
     package com.smartedu.learningpath.config;
 
     import lombok.RequiredArgsConstructor;
+    import org.springframework.beans.factory.annotation.Value;
     import org.springframework.context.annotation.Bean;
     import org.springframework.context.annotation.Configuration;
     import org.springframework.security.authentication.AuthenticationProvider;
@@ -23,6 +24,9 @@
         private final CustomAuthEntryPoint customAuthEntryPoint;
         private final CorsConfigurationSource corsConfigurationSource;
 
+        @Value("${management.server.port:-1}")
+        private int managementPort;
+
         @Bean
         public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
             http
@@ -38,9 +42,14 @@
                             // 1. Define all publicly accessible endpoints first.
                             .requestMatchers(
                                     "/api/auth/**",
+                                    // Signed, expiring file URLs; the signature is the authorization.
+                                    "/api/files/**",
                                     "/uploads/**",
                                     "/favicon.ico"
                             ).permitAll()
+                            // The actuator (health, metrics) only listens on the management port, bound to
+                            // localhost in application.yml; on the public port it falls under denyAll below.
+                            .requestMatchers(request -> request.getLocalPort() == managementPort).permitAll()
 
                             // 2. ✅ DEFINITIVE FIX: Secure all other API endpoints.
                             // This single, clear rule states that any other request to a URL
@@ -0,0 +1,71 @@
+package com.smartedu.learningpath.config;
+
+import com.smartedu.learningpath.storage.InMemoryObjectStorage;
+import com.smartedu.learningpath.storage.LocalObjectStorage;
+import com.smartedu.learningpath.storage.ObjectStorage;
+import com.smartedu.learningpath.storage.S3ObjectStorage;
+import com.smartedu.learningpath.storage.StagingArea;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Chooses where files are stored (learningpath.storage.type):
+ * local - the uploads directory on this node's disk (default);
+ * memory - the heap, for tests;
+ * s3 - a bucket of an S3-compatible service. For a local stand-in such as MinIO, set the
+ *      endpoint (e.g. http://localhost:9000), path-style access and static credentials.
+ * Files are staged on this node's disk in learningpath.storage.staging-dir, by default inside
+ * the local root.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public ObjectStorage objectStorage(@Value("${learningpath.storage.type:local}") String type,
+                                       @Value("${learningpath.storage.local.root:uploads}") String localRoot,
+                                       @Value("${learningpath.storage.s3.bucket:}") String bucket,
+                                       @Value("${learningpath.storage.s3.region:us-east-1}") String region,
+                                       @Value("${learningpath.storage.s3.endpoint:}") String endpoint,
+                                       @Value("${learningpath.storage.s3.path-style:false}") boolean pathStyle,
+                                       @Value("${learningpath.storage.s3.access-key:}") String accessKey,
+                                       @Value("${learningpath.storage.s3.secret-key:}") String secretKey) {
+        return switch (type) {
+            case "local" -> new LocalObjectStorage(Paths.get(localRoot));
+            case "memory" -> new InMemoryObjectStorage();
+            case "s3" -> {
+                if (bucket.isBlank()) {
+                    throw new IllegalStateException("learningpath.storage.s3.bucket must be set for S3 storage.");
+                }
+                AwsCredentialsProvider credentials = accessKey.isBlank()
+                        ? DefaultCredentialsProvider.builder().build()
+                        : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+                S3ClientBuilder builder = S3Client.builder()
+                        .region(Region.of(region))
+                        .credentialsProvider(credentials)
+                        .forcePathStyle(pathStyle);
+                if (!endpoint.isBlank()) {
+                    builder.endpointOverride(URI.create(endpoint));
+                }
+                yield new S3ObjectStorage(builder.build(), bucket);
+            }
+            default -> throw new IllegalStateException("Unknown learningpath.storage.type: " + type);
+        };
+    }
+
+    @Bean
+    public StagingArea stagingArea(
+            @Value("${learningpath.storage.staging-dir:${learningpath.storage.local.root:uploads}/.staging}") String directory) {
+        return new StagingArea(Paths.get(directory));
+    }
+}
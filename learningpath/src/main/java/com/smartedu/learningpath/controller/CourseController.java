@@ -2,15 +2,25 @@ package com.smartedu.learningpath.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smartedu.learningpath.dto.*;
+import com.smartedu.learningpath.service.CourseDetailAccess;
+import com.smartedu.learningpath.service.CourseRosterService;
 import com.smartedu.learningpath.service.CourseService;
+import com.smartedu.learningpath.service.InstructorAnalyticsService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +30,8 @@ import java.util.Map;
 public class CourseController {
 
     private final CourseService courseService;
+    private final CourseRosterService courseRosterService;
+    private final InstructorAnalyticsService instructorAnalyticsService;
     private final ObjectMapper objectMapper;
 
     @PostMapping(consumes = {"multipart/form-data"})
@@ -45,19 +57,45 @@ public class CourseController {
             Principal principal
     ) throws IOException {
         CourseCreateRequest request = objectMapper.readValue(courseDataJson, CourseCreateRequest.class);
-        courseService.updateCourse(id, request, thumbnail, files, principal.getName());
-        return ResponseEntity.ok(Map.of("message", "Course updated successfully"));
+        CourseUpdateSummary changes = courseService.updateCourse(id, request, thumbnail, files, principal.getName());
+        return ResponseEntity.ok(Map.of("message", "Course updated successfully", "changes", changes));
     }
 
+    // Listings only send an ETag: enrollment counts change without touching any course's
+    // updatedAt, so a Last-Modified date alone could validate a stale page.
     @GetMapping("/my-courses")
     @PreAuthorize("hasRole('INSTRUCTOR')")
     public ResponseEntity<Page<CourseSummaryResponse>> getMyCourses(
             Principal principal,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "9") int size
+            @RequestParam(defaultValue = "9") int size,
+            WebRequest webRequest
     ) {
+        String etag = courseService.instructorCoursesEtag(principal.getName(), page, size);
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 has already been written
+        }
         Page<CourseSummaryResponse> courses = courseService.findCoursesByInstructor(principal.getName(), page, size);
-        return ResponseEntity.ok(courses);
+        return ResponseEntity.ok().eTag(etag).body(courses);
+    }
+
+    /**
+     * Cursor mode of /my-courses, selected by the presence of the "after" parameter
+     * (send it empty for the first slice). Deep slices cost the same as the first one.
+     */
+    @GetMapping(value = "/my-courses", params = "after")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<CursorSliceResponse<CourseSummaryResponse>> getMyCoursesSlice(
+            Principal principal,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "9") int size,
+            WebRequest webRequest
+    ) {
+        String etag = courseService.instructorCoursesEtag(principal.getName(), after, size);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(courseService.findCoursesByInstructor(principal.getName(), after, size));
     }
 
     @GetMapping("/all-for-student")
@@ -65,17 +103,49 @@ public class CourseController {
     public ResponseEntity<Page<CourseSummaryResponse>> getAllCoursesForStudent(
             Principal principal,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "9") int size
+            @RequestParam(defaultValue = "9") int size,
+            WebRequest webRequest
     ) {
+        String etag = courseService.studentCatalogEtag(principal.getName(), page, size);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         Page<CourseSummaryResponse> courses = courseService.findAllCoursesForStudent(principal.getName(), page, size);
-        return ResponseEntity.ok(courses);
+        return ResponseEntity.ok().eTag(etag).body(courses);
+    }
+
+    // Cursor mode of /all-for-student, see getMyCoursesSlice.
+    @GetMapping(value = "/all-for-student", params = "after")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ResponseEntity<CursorSliceResponse<CourseSummaryResponse>> getAllCoursesForStudentSlice(
+            Principal principal,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "9") int size,
+            WebRequest webRequest
+    ) {
+        String etag = courseService.studentCatalogEtag(principal.getName(), after, size);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(courseService.findAllCoursesForStudent(principal.getName(), after, size));
     }
 
+    /**
+     * Supports conditional GETs: the validators are computed from the cached course tree and the
+     * user's enrollment, and a matching If-None-Match/If-Modified-Since gets a 304 without building the body.
+     */
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('STUDENT', 'INSTRUCTOR')")
-    public ResponseEntity<CourseDetailResponse> getCourseById(@PathVariable Long id, Principal principal) {
-        CourseDetailResponse course = courseService.findCourseDetailsById(id, principal);
-        return ResponseEntity.ok(course);
+    public ResponseEntity<CourseDetailResponse> getCourseById(@PathVariable Long id, Principal principal, WebRequest webRequest) {
+        CourseDetailAccess access = courseService.resolveCourseDetailAccess(id, principal.getName());
+        if (webRequest.checkNotModified(access.etag(), access.lastModified())) {
+            return null;
+        }
+        CourseDetailResponse course = courseService.toCourseDetailResponse(access);
+        return ResponseEntity.ok()
+                .eTag(access.etag())
+                .lastModified(access.lastModified())
+                .body(course);
     }
 
     @DeleteMapping("/{id}")
@@ -107,13 +177,95 @@ public class CourseController {
         return ResponseEntity.ok(courses);
     }
 
+    // Cursor mode of /search, ordered by relevance; see getMyCoursesSlice.
+    @GetMapping(value = "/search", params = "after")
+    @PreAuthorize("hasAnyRole('INSTRUCTOR', 'STUDENT')")
+    public ResponseEntity<CursorSliceResponse<CourseSummaryResponse>> searchCoursesSlice(
+            @RequestParam String query,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "9") int size,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(courseService.searchCourses(query, after, size, principal));
+    }
+
+    /**
+     * Totals, enrollment series and top courses across all the instructor's courses.
+     */
+    @GetMapping("/my-courses/analytics")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<InstructorAnalyticsResponse> getInstructorAnalytics(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(instructorAnalyticsService.getAnalytics(principal.getName(), from, to));
+    }
+
+    /**
+     * "Students also took": courses often taken together with this one.
+     */
+    @GetMapping("/{courseId}/recommendations")
+    @PreAuthorize("hasAnyRole('STUDENT', 'INSTRUCTOR')")
+    public ResponseEntity<List<CourseSummaryResponse>> getSimilarCourses(
+            @PathVariable Long courseId,
+            @RequestParam(defaultValue = "6") int limit,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(courseService.findSimilarCourses(courseId, principal.getName(), limit));
+    }
+
+    /**
+     * Recommendations for the student's catalog, based on the courses they are enrolled in.
+     */
+    @GetMapping("/recommendations")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ResponseEntity<List<CourseSummaryResponse>> getRecommendedCourses(
+            @RequestParam(defaultValue = "6") int limit,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(courseService.recommendCoursesForStudent(principal.getName(), limit));
+    }
+
     @GetMapping("/{courseId}/analytics")
     @PreAuthorize("hasRole('INSTRUCTOR')")
     public ResponseEntity<CourseAnalyticsResponse> getCourseAnalytics(
             @PathVariable Long courseId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
             Principal principal
     ) {
-        CourseAnalyticsResponse analytics = courseService.getCourseAnalytics(courseId, principal.getName());
+        CourseAnalyticsResponse analytics = courseService.getCourseAnalytics(courseId, principal.getName(), from, to);
         return ResponseEntity.ok(analytics);
     }
+
+    @GetMapping("/{courseId}/roster")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<CursorSliceResponse<EnrolledStudentDTO>> getCourseRoster(
+            @PathVariable Long courseId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String q,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(courseRosterService.findRoster(courseId, principal.getName(), q, after, size));
+    }
+
+    @GetMapping("/{courseId}/roster/export")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<StreamingResponseBody> exportCourseRoster(
+            @PathVariable Long courseId,
+            @RequestParam(defaultValue = "csv") String format,
+            Principal principal
+    ) {
+        CourseRosterService.ExportFormat exportFormat = CourseRosterService.parseFormat(format);
+        StreamingResponseBody body = courseRosterService.exportRoster(courseId, principal.getName(), exportFormat);
+        boolean csv = exportFormat == CourseRosterService.ExportFormat.CSV;
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"course-" + courseId + "-students." + (csv ? "csv" : "ndjson") + "\"")
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 }
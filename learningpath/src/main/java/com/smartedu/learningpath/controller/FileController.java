@@ -0,0 +1,51 @@
+package com.smartedu.learningpath.controller;
+
+import com.smartedu.learningpath.service.FileDeliveryService;
+import com.smartedu.learningpath.service.FileStorageService;
+import com.smartedu.learningpath.service.SignedFileUrlService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Serves resource files through the signed URLs issued by GET /api/resources/{id}/link.
+ * The URL itself is the authorization: it is checked in memory, with no database access.
+ */
+@RestController
+@RequestMapping("/api/files")
+@RequiredArgsConstructor
+public class FileController {
+
+    private final SignedFileUrlService signedFileUrlService;
+    private final FileStorageService fileStorageService;
+    private final FileDeliveryService fileDeliveryService;
+
+    @GetMapping("/{token}")
+    public void serveFile(@PathVariable String token, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        SignedFileUrlService.FileGrant grant = signedFileUrlService.verify(token).orElse(null);
+        if (grant == null) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "This link is invalid or has expired.");
+            return;
+        }
+
+        FileStorageService.StoredContent file;
+        try {
+            file = fileStorageService.locate(grant.logicalPath(), grant.sha256());
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found.");
+            return;
+        }
+        if (grant.attachment()) {
+            fileDeliveryService.serve(request, response, file, MediaType.APPLICATION_OCTET_STREAM_VALUE, "attachment");
+        } else {
+            fileDeliveryService.serve(request, response, file, MediaType.APPLICATION_PDF_VALUE, "inline");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.smartedu.learningpath.controller;
+
+import com.smartedu.learningpath.dto.ProgressHeartbeatRequest;
+import com.smartedu.learningpath.service.ProgressIngestionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+/**
+ * Learning progress. While a student has a resource open, the client sends
+ * POST /api/progress/heartbeat {courseId, resourceId, secondsSpent, completed} every few seconds.
+ * A 202 means the heartbeat is buffered; a 429 means the server is behind, and the client
+ * should keep the time and send it with a later heartbeat (after Retry-After seconds).
+ */
+@RestController
+@RequestMapping("/api/progress")
+@RequiredArgsConstructor
+public class ProgressController {
+
+    private static final String RETRY_AFTER_SECONDS = "2";
+
+    private final ProgressIngestionService progressIngestionService;
+
+    @PostMapping("/heartbeat")
+    @PreAuthorize("hasRole('STUDENT')")
+    public ResponseEntity<Void> heartbeat(@RequestBody ProgressHeartbeatRequest heartbeat, Principal principal) {
+        if (!progressIngestionService.recordHeartbeat(heartbeat, principal.getName())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -1,14 +1,17 @@
 package com.smartedu.learningpath.controller;
 
+import com.smartedu.learningpath.dto.SignedFileUrlResponse;
+import com.smartedu.learningpath.service.FileDeliveryService;
+import com.smartedu.learningpath.service.FileStorageService;
 import com.smartedu.learningpath.service.ResourceService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType; // ✅ IMPORT MediaType
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.security.Principal;
 
 @RestController
@@ -17,34 +20,45 @@ import java.security.Principal;
 public class ResourceController {
 
     private final ResourceService resourceService;
+    private final FileDeliveryService fileDeliveryService;
 
+    /**
+     * Returns a short-lived signed URL for a resource file, so it can be opened without the
+     * Authorization header (iframe src, download link) and served without database lookups.
+     */
+    @GetMapping("/{resourceId}/link")
+    @PreAuthorize("hasAnyRole('STUDENT', 'INSTRUCTOR')")
+    public SignedFileUrlResponse getResourceLink(@PathVariable Long resourceId,
+                                                 @RequestParam(defaultValue = "false") boolean download,
+                                                 Principal principal) {
+        return resourceService.issueFileUrl(resourceId, principal.getName(), download);
+    }
+
+    /**
+     * Downloads a resource file. Supports Range requests, so interrupted downloads can resume.
+     */
     @GetMapping("/{resourceId}/download")
     @PreAuthorize("hasRole('STUDENT')")
-    public ResponseEntity<Resource> downloadResource(@PathVariable Long resourceId, Principal principal) {
-        Resource file = resourceService.loadFileAsResource(resourceId, principal.getName());
+    public void downloadResource(@PathVariable Long resourceId, Principal principal,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Authorization happens here, before any file I/O.
+        FileStorageService.StoredContent file = resourceService.loadFileAsResource(resourceId, principal.getName());
 
-        String headerValue = "attachment; filename=\"" + file.getFilename() + "\"";
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, headerValue)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM) // Use a generic type for downloads
-                .body(file);
+        // Use a generic type for downloads
+        fileDeliveryService.serve(request, response, file, MediaType.APPLICATION_OCTET_STREAM_VALUE, "attachment");
     }
 
     /**
      * Serves a resource file for inline viewing (e.g., in an iframe).
+     * PDF viewers use Range requests to load only the pages they display.
      */
     @GetMapping("/{resourceId}/view")
     @PreAuthorize("hasRole('STUDENT')")
-    public ResponseEntity<Resource> viewResource(@PathVariable Long resourceId, Principal principal) {
-        Resource file = resourceService.loadFileForViewing(resourceId, principal.getName());
-
-        String headerValue = "inline; filename=\"" + file.getFilename() + "\"";
+    public void viewResource(@PathVariable Long resourceId, Principal principal,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        FileStorageService.StoredContent file = resourceService.loadFileForViewing(resourceId, principal.getName());
 
         // ✅ DEFINITIVE FIX: Explicitly set the Content-Type to application/pdf
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, headerValue)
-                .contentType(MediaType.APPLICATION_PDF)
-                .body(file);
+        fileDeliveryService.serve(request, response, file, MediaType.APPLICATION_PDF_VALUE, "inline");
     }
 }
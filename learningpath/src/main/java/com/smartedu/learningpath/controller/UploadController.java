@@ -0,0 +1,65 @@
+package com.smartedu.learningpath.controller;
+
+import com.smartedu.learningpath.dto.UploadInitRequest;
+import com.smartedu.learningpath.dto.UploadStatusResponse;
+import com.smartedu.learningpath.service.UploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Resumable chunked uploads for large resource files:
+ * 1. POST /api/uploads {courseId, filename, size} starts an upload.
+ * 2. PUT /api/uploads/{id}?offset=N with the raw bytes (application/octet-stream) appends a chunk.
+ *    On a 409 the body carries the offset the server expects.
+ * 3. GET /api/uploads/{id} tells where to resume after a broken connection.
+ * 4. POST /api/uploads/{id}/complete finishes it; then send the id as "uploadId" of a
+ *    resource when updating the course.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final UploadService uploadService;
+
+    @PostMapping
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<UploadStatusResponse> initUpload(@RequestBody UploadInitRequest request, Principal principal) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(uploadService.init(request, principal.getName()));
+    }
+
+    @GetMapping("/{uploadId}")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<UploadStatusResponse> getUploadStatus(@PathVariable String uploadId, Principal principal) {
+        return ResponseEntity.ok(uploadService.status(uploadId, principal.getName()));
+    }
+
+    @PutMapping(value = "/{uploadId}", consumes = "application/octet-stream")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<UploadStatusResponse> appendChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            HttpServletRequest request,
+            Principal principal
+    ) throws IOException {
+        UploadStatusResponse current = uploadService.status(uploadId, principal.getName());
+        if (current.isCompleted() || current.getOffset() != offset) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(current);
+        }
+        // The body is read straight from the request stream; nothing is buffered in memory.
+        return ResponseEntity.ok(uploadService.appendChunk(uploadId, offset, request.getInputStream(), principal.getName()));
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    @PreAuthorize("hasRole('INSTRUCTOR')")
+    public ResponseEntity<UploadStatusResponse> completeUpload(@PathVariable String uploadId, Principal principal) {
+        return ResponseEntity.ok(uploadService.complete(uploadId, principal.getName()));
+    }
+}
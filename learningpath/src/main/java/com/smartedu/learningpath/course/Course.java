@@ -11,7 +11,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "courses")
+@Table(name = "courses", indexes = {
+        // Backs the keyset-paginated catalog and instructor listings (newest first).
+        @Index(name = "idx_courses_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_courses_instructor_created_at_id", columnList = "instructor_id, created_at, id")
+})
 @Getter
 @Setter
 @Builder
@@ -31,6 +35,12 @@ public class Course {
     // Path to a cover image, stored locally
     private String thumbnailPath;
 
+    // Pre-sized copies of the cover image, created asynchronously by ThumbnailService.
+    // Null until they are ready; clients fall back to thumbnailPath.
+    private String thumbnailCardPath;
+    private String thumbnailRetinaPath;
+    private String thumbnailDetailPath;
+
 
     //  PRICE AND CURRENCY FIELDS
     @Column(precision = 10, scale = 2) // e.g., 99999999.99
@@ -0,0 +1,30 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Number of resources in a course and their summed estimated time, the denominators of the
+ * per-student completion figures. Refreshed by CourseCompletionService whenever the course's
+ * resources change and backfilled by SchemaInitializer.
+ */
+@Entity
+@Table(name = "course_content_totals")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseContentTotals {
+
+    @Id
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(nullable = false)
+    private int resourceCount;
+
+    // Resources without an estimate count as zero minutes.
+    @Column(nullable = false)
+    private long estimatedMinutes;
+}
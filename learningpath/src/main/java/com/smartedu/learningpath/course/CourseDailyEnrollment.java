@@ -0,0 +1,45 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Number of enrollments in a course on one day, so the analytics chart reads one small row
+ * per day instead of every enrollment. Maintained by EnrollmentCounterService and backfilled
+ * by SchemaInitializer.
+ */
+@Entity
+@Table(name = "course_daily_enrollments")
+@IdClass(CourseDailyEnrollment.Key.class)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseDailyEnrollment {
+
+    // The primary key (course_id, enrollment_day) is also the index for date range queries.
+    @Id
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Id
+    @Column(name = "enrollment_day")
+    private LocalDate enrollmentDay;
+
+    @Column(nullable = false)
+    private long enrollmentCount;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long courseId;
+        private LocalDate enrollmentDay;
+    }
+}
@@ -0,0 +1,25 @@
+package com.smartedu.learningpath.course;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface CourseDailyEnrollmentRepository extends JpaRepository<CourseDailyEnrollment, CourseDailyEnrollment.Key> {
+
+    // A single range scan of the primary key.
+    @Query("SELECT d FROM CourseDailyEnrollment d WHERE d.courseId = :courseId " +
+            "AND d.enrollmentDay BETWEEN :from AND :to ORDER BY d.enrollmentDay")
+    List<CourseDailyEnrollment> findDailySeries(@Param("courseId") Long courseId,
+                                                @Param("from") LocalDate from,
+                                                @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM CourseDailyEnrollment d WHERE d.courseId = :courseId")
+    void deleteByCourseId(@Param("courseId") Long courseId);
+}
@@ -0,0 +1,27 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Denormalized number of enrollments per course, so course listings don't have to
+ * run a COUNT(*) over the enrollments table for every card.
+ * Maintained by EnrollmentCounterService.
+ */
+@Entity
+@Table(name = "course_enrollment_counters")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseEnrollmentCounter {
+
+    // Same value as the course id; there is exactly one counter row per course.
+    @Id
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(nullable = false)
+    private long enrollmentCount;
+}
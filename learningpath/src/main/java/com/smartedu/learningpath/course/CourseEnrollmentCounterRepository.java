@@ -0,0 +1,21 @@
+package com.smartedu.learningpath.course;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CourseEnrollmentCounterRepository extends JpaRepository<CourseEnrollmentCounter, Long> {
+
+    // Loads the counters for a whole page of courses in one query.
+    List<CourseEnrollmentCounter> findAllByCourseIdIn(Collection<Long> courseIds);
+
+    @Modifying
+    @Query("DELETE FROM CourseEnrollmentCounter c WHERE c.courseId = :courseId")
+    void deleteByCourseId(@Param("courseId") Long courseId);
+}
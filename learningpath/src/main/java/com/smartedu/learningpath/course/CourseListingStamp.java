@@ -0,0 +1,13 @@
+package com.smartedu.learningpath.course;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aggregate fingerprint of a set of courses: it changes whenever a course in the set is
+ * created, updated or deleted, or gains enrollments. Used to derive listing ETags.
+ */
+public interface CourseListingStamp {
+    Long getCourseCount();
+    LocalDateTime getLastUpdatedAt();
+    Long getEnrollmentTotal();
+}
@@ -1,34 +1,148 @@
 package com.smartedu.learningpath.course;
 
-import com.smartedu.learningpath.user.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, Long> {
 
-    @Query("SELECT c FROM Course c WHERE c.instructor = :instructor")
-    Page<Course> findByInstructor(@Param("instructor") User instructor, Pageable pageable);
+    /**
+     * Loads a course with its instructor and modules in one statement. Module.resources is
+     * subselect-fetched, so touching any module's resources loads them for all modules at once:
+     * the whole tree costs two statements no matter how many modules the course has.
+     */
+    @EntityGraph(attributePaths = {"instructor", "modules"})
+    @Query("SELECT c FROM Course c WHERE c.id = :id")
+    Optional<Course> findDetailById(@Param("id") Long id);
+
+    @Query("SELECT COUNT(c) AS courseCount, MAX(c.updatedAt) AS lastUpdatedAt, " +
+            "COALESCE(SUM(ec.enrollmentCount), 0) AS enrollmentTotal " +
+            "FROM Course c LEFT JOIN CourseEnrollmentCounter ec ON ec.courseId = c.id")
+    CourseListingStamp findCatalogStamp();
+
+    @Query("SELECT COUNT(c) AS courseCount, MAX(c.updatedAt) AS lastUpdatedAt, " +
+            "COALESCE(SUM(ec.enrollmentCount), 0) AS enrollmentTotal " +
+            "FROM Course c LEFT JOIN CourseEnrollmentCounter ec ON ec.courseId = c.id " +
+            "WHERE c.instructor.id = :instructorId")
+    CourseListingStamp findInstructorStamp(@Param("instructorId") Long instructorId);
+
+    // --- Course card (CourseSummaryView) queries ---
+    // Each one is a single statement per page: the instructor name comes from a join, the module
+    // count from a correlated COUNT and the enrollment count from the denormalized counter table.
+
+    String SUMMARY_SELECT =
+            "SELECT c.id AS id, c.title AS title, c.description AS description, c.thumbnailPath AS thumbnailPath, " +
+            "c.thumbnailCardPath AS thumbnailCardPath, c.thumbnailRetinaPath AS thumbnailRetinaPath, " +
+            "c.price AS price, c.discountPercentage AS discountPercentage, i.fullName AS instructorName, " +
+            "c.createdAt AS createdAt, c.updatedAt AS updatedAt, " +
+            "SIZE(c.modules) AS moduleCount, COALESCE(ec.enrollmentCount, 0) AS enrollmentCount " +
+            "FROM Course c JOIN c.instructor i LEFT JOIN CourseEnrollmentCounter ec ON ec.courseId = c.id ";
+
+    // Native twin of SUMMARY_SELECT for the full-text queries; aliases are quoted to keep their case.
+    String SUMMARY_COLUMNS_SQL =
+            "c.id AS \"id\", c.title AS \"title\", c.description AS \"description\", c.thumbnail_path AS \"thumbnailPath\", " +
+            "c.thumbnail_card_path AS \"thumbnailCardPath\", c.thumbnail_retina_path AS \"thumbnailRetinaPath\", " +
+            "c.price AS \"price\", c.discount_percentage AS \"discountPercentage\", i.full_name AS \"instructorName\", " +
+            "c.created_at AS \"createdAt\", c.updated_at AS \"updatedAt\", " +
+            "(SELECT count(*) FROM modules m WHERE m.course_id = c.id) AS \"moduleCount\", " +
+            "COALESCE(ec.enrollment_count, 0) AS \"enrollmentCount\" ";
+
+    String SUMMARY_JOINS_SQL =
+            "JOIN users i ON i.id = c.instructor_id " +
+            "LEFT JOIN course_enrollment_counters ec ON ec.course_id = c.id ";
+
+    @Query(value = SUMMARY_SELECT + "ORDER BY c.createdAt DESC, c.id DESC",
+            countQuery = "SELECT count(c) FROM Course c")
+    Page<CourseSummaryView> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CourseSummaryView> findAllSummaries();
+
+    @Query(value = SUMMARY_SELECT + "WHERE c.instructor.id = :instructorId ORDER BY c.createdAt DESC, c.id DESC",
+            countQuery = "SELECT count(c) FROM Course c WHERE c.instructor.id = :instructorId")
+    Page<CourseSummaryView> findSummariesByInstructor(@Param("instructorId") Long instructorId, Pageable pageable);
 
     /**
-     * ✅ DEFINITIVE FIX: Uses a standard and robust JPQL query for case-insensitive search.
-     * This syntax is guaranteed to be parsed correctly by the database.
+     * Full-text search over an instructor's own courses, backed by the GIN-indexed
+     * {@code search_vector} column (see SchemaInitializer). Best matches come first.
+     * @param tsQuery A prepared tsquery string, e.g. "java:* & spring:*".
      */
-    @Query("SELECT c FROM Course c WHERE c.instructor = :instructor AND " +
-            "(LOWER(c.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-            "LOWER(c.description) LIKE LOWER(CONCAT('%', :query, '%')))")
-    Page<Course> searchByInstructor(@Param("instructor") User instructor, @Param("query") String query, Pageable pageable);
+    @Query(value = "SELECT " + SUMMARY_COLUMNS_SQL +
+            "FROM courses c CROSS JOIN to_tsquery('english', :tsQuery) q " + SUMMARY_JOINS_SQL +
+            "WHERE c.instructor_id = :instructorId AND c.search_vector @@ q " +
+            "ORDER BY ts_rank(c.search_vector, q) DESC, c.id DESC",
+            countQuery = "SELECT count(*) FROM courses c " +
+                    "WHERE c.instructor_id = :instructorId AND c.search_vector @@ to_tsquery('english', :tsQuery)",
+            nativeQuery = true)
+    Page<CourseSummaryView> searchByInstructor(@Param("instructorId") Long instructorId, @Param("tsQuery") String tsQuery, Pageable pageable);
 
     /**
-     * ✅ DEFINITIVE FIX: Uses a standard and robust JPQL query for case-insensitive search.
+     * Full-text search over the whole catalog, ranked by relevance.
      */
-    @Query("SELECT c FROM Course c WHERE " +
-            "LOWER(c.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-            "LOWER(c.description) LIKE LOWER(CONCAT('%', :query, '%'))")
-    Page<Course> searchAllCourses(@Param("query") String query, Pageable pageable);
-}
\ No newline at end of file
+    @Query(value = "SELECT " + SUMMARY_COLUMNS_SQL +
+            "FROM courses c CROSS JOIN to_tsquery('english', :tsQuery) q " + SUMMARY_JOINS_SQL +
+            "WHERE c.search_vector @@ q " +
+            "ORDER BY ts_rank(c.search_vector, q) DESC, c.id DESC",
+            countQuery = "SELECT count(*) FROM courses c WHERE c.search_vector @@ to_tsquery('english', :tsQuery)",
+            nativeQuery = true)
+    Page<CourseSummaryView> searchAllCourses(@Param("tsQuery") String tsQuery, Pageable pageable);
+
+    // Cards for a list of ids in no particular order, e.g. recommendations; the caller orders them.
+    @Query(SUMMARY_SELECT + "WHERE c.id IN :ids")
+    List<CourseSummaryView> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // --- Keyset (cursor) pagination ---
+    // Pass PageRequest.of(0, limit) as the Pageable; these never issue a COUNT(*) or an OFFSET.
+
+    @Query(SUMMARY_SELECT + "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CourseSummaryView> findCatalogSlice(Pageable limit);
+
+    @Query(SUMMARY_SELECT +
+            "WHERE c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CourseSummaryView> findCatalogSliceAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "WHERE c.instructor.id = :instructorId ORDER BY c.createdAt DESC, c.id DESC")
+    List<CourseSummaryView> findInstructorSlice(@Param("instructorId") Long instructorId, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "WHERE c.instructor.id = :instructorId " +
+            "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CourseSummaryView> findInstructorSliceAfter(@Param("instructorId") Long instructorId, @Param("createdAt") LocalDateTime createdAt,
+                                                     @Param("id") Long id, Pageable limit);
+
+    /**
+     * Ranked search results strictly after the given (rank, id) position.
+     * For the first slice pass Float.POSITIVE_INFINITY and Long.MAX_VALUE.
+     */
+    @Query(value = "SELECT " + SUMMARY_COLUMNS_SQL + ", h.rank AS \"rank\" FROM (" +
+            "SELECT c.id, ts_rank(c.search_vector, q) AS rank FROM courses c, to_tsquery('english', :tsQuery) q " +
+            "WHERE c.search_vector @@ q) h " +
+            "JOIN courses c ON c.id = h.id " + SUMMARY_JOINS_SQL +
+            "WHERE h.rank < CAST(:afterRank AS real) OR (h.rank = CAST(:afterRank AS real) AND h.id < :afterId) " +
+            "ORDER BY h.rank DESC, h.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<CourseSearchView> searchAllCoursesAfter(@Param("tsQuery") String tsQuery, @Param("afterRank") float afterRank,
+                                                 @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + SUMMARY_COLUMNS_SQL + ", h.rank AS \"rank\" FROM (" +
+            "SELECT c.id, ts_rank(c.search_vector, q) AS rank FROM courses c, to_tsquery('english', :tsQuery) q " +
+            "WHERE c.instructor_id = :instructorId AND c.search_vector @@ q) h " +
+            "JOIN courses c ON c.id = h.id " + SUMMARY_JOINS_SQL +
+            "WHERE h.rank < CAST(:afterRank AS real) OR (h.rank = CAST(:afterRank AS real) AND h.id < :afterId) " +
+            "ORDER BY h.rank DESC, h.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<CourseSearchView> searchByInstructorAfter(@Param("instructorId") Long instructorId, @Param("tsQuery") String tsQuery,
+                                                   @Param("afterRank") float afterRank, @Param("afterId") Long afterId,
+                                                   @Param("limit") int limit);
+}
@@ -0,0 +1,8 @@
+package com.smartedu.learningpath.course;
+
+/**
+ * A course card plus its full-text relevance, used for keyset-paginated search.
+ */
+public interface CourseSearchView extends CourseSummaryView {
+    Float getRank();
+}
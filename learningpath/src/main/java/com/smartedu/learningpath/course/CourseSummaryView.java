@@ -0,0 +1,26 @@
+package com.smartedu.learningpath.course;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Everything a course card needs, read in a single SQL statement without hydrating
+ * Course, User, Module or Resource entities. See the summary queries in CourseRepository.
+ */
+public interface CourseSummaryView {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getThumbnailPath();
+    String getThumbnailCardPath();
+    String getThumbnailRetinaPath();
+    BigDecimal getPrice();
+    BigDecimal getDiscountPercentage();
+    String getInstructorName();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+    Long getModuleCount();
+
+    // Flushed counter value; EnrollmentCounterService adds the not-yet-flushed delta.
+    Long getEnrollmentCount();
+}
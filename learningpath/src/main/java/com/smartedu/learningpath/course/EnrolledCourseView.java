@@ -0,0 +1,28 @@
+package com.smartedu.learningpath.course;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A course card of a student's enrolled courses, with the student's completion rollup,
+ * read in a single SQL statement. See EnrollmentRepository.findEnrolledCourses.
+ */
+public interface EnrolledCourseView {
+    Long getId();
+    String getTitle();
+    String getDescription();
+    String getThumbnailPath();
+    String getThumbnailCardPath();
+    String getThumbnailRetinaPath();
+    BigDecimal getPrice();
+    BigDecimal getDiscountPercentage();
+    String getInstructorName();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+
+    // From course_content_totals and student_course_progress; 0 when there is no row yet.
+    Long getResourceCount();
+    Long getEstimatedMinutes();
+    Long getCompletedResources();
+    Long getCompletedMinutes();
+}
@@ -11,6 +11,9 @@ import java.time.LocalDateTime;
 @Table(name = "enrollments", uniqueConstraints = {
         // This ensures a student can only enroll in a course once.
         @UniqueConstraint(columnNames = {"student_id", "course_id"})
+}, indexes = {
+        // Serves the course roster, newest first, without a sort.
+        @Index(name = "idx_enrollments_course_date", columnList = "course_id, enrollment_date, id")
 })
 @Getter
 @Setter
@@ -2,8 +2,11 @@ package com.smartedu.learningpath.course;
 
 import com.smartedu.learningpath.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,8 +14,27 @@ import java.util.Optional;
 public interface EnrollmentRepository extends JpaRepository<Enrollment, Long> {
 
     Optional<Enrollment> findByStudentAndCourse(User student, Course course);
+
+    @Query("SELECT e.course.id FROM Enrollment e WHERE e.student.id = :studentId")
+    List<Long> findCourseIdsByStudentId(@Param("studentId") Long studentId);
+
+    @Query("SELECT e.enrollmentDate FROM Enrollment e WHERE e.student.id = :studentId AND e.course.id = :courseId")
+    Optional<LocalDateTime> findEnrollmentDate(@Param("studentId") Long studentId, @Param("courseId") Long courseId);
     List<Enrollment> findAllByStudent(User student);
 
+    // A student's enrolled-course cards with their completion rollups, newest enrollment first.
+    @Query("SELECT c.id AS id, c.title AS title, c.description AS description, c.thumbnailPath AS thumbnailPath, " +
+            "c.thumbnailCardPath AS thumbnailCardPath, c.thumbnailRetinaPath AS thumbnailRetinaPath, " +
+            "c.price AS price, c.discountPercentage AS discountPercentage, i.fullName AS instructorName, " +
+            "c.createdAt AS createdAt, c.updatedAt AS updatedAt, " +
+            "COALESCE(t.resourceCount, 0) AS resourceCount, COALESCE(t.estimatedMinutes, 0) AS estimatedMinutes, " +
+            "COALESCE(p.completedResources, 0) AS completedResources, COALESCE(p.completedMinutes, 0) AS completedMinutes " +
+            "FROM Enrollment e JOIN e.course c JOIN c.instructor i " +
+            "LEFT JOIN CourseContentTotals t ON t.courseId = c.id " +
+            "LEFT JOIN StudentCourseProgress p ON p.courseId = c.id AND p.studentId = e.student.id " +
+            "WHERE e.student.id = :studentId ORDER BY e.enrollmentDate DESC, e.id DESC")
+    List<EnrolledCourseView> findEnrolledCourses(@Param("studentId") Long studentId);
+
     //  THIS METHOD: Finds all enrollment records for a given course.
     List<Enrollment> findAllByCourse(Course course);
 
@@ -2,6 +2,8 @@ package com.smartedu.learningpath.course;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 
 import java.util.List;
 
@@ -14,8 +16,11 @@ import java.util.List;
 @AllArgsConstructor
 public class Module {
 
+    // Sequence ids (fetched 50 at a time) let Hibernate batch the inserts of a course tree;
+    // IDENTITY would force one INSERT round-trip per row.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "modules_seq")
+    @SequenceGenerator(name = "modules_seq", sequenceName = "modules_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -28,7 +33,10 @@ public class Module {
     @JoinColumn(name = "course_id", nullable = false)
     private Course course;
 
-    // A module contains a list of learning resources
+    // A module contains a list of learning resources.
+    // SUBSELECT loads the resources of every module of the course in a single query.
     @OneToMany(mappedBy = "module", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Fetch(FetchMode.SUBSELECT)
+    @OrderBy("resourceOrder ASC, id ASC")
     private List<Resource> resources;
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A directory under uploads/ marked for removal, e.g. the folder of a deleted course.
+ * StorageReclaimer deletes what the storage holds under it in the background and then removes the row.
+ */
+@Entity
+@Table(name = "pending_directory_removals")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingDirectoryRemoval {
+
+    // e.g. "uploads/12/"
+    @Id
+    private String path;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime markedAt;
+}
@@ -12,8 +12,10 @@ import lombok.*;
 @AllArgsConstructor
 public class Resource {
 
+    // Pooled sequence ids for batched inserts, see Module.id.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "resources_seq")
+    @SequenceGenerator(name = "resources_seq", sequenceName = "resources_seq", allocationSize = 50)
     private Long id;
 
     private String title;
@@ -30,6 +32,9 @@ public class Resource {
 
     private Integer estimatedTimeToCompleteMinutes;
 
+    // Position within the module, starting at 1. Rows created before this column existed have none and sort last.
+    private Integer resourceOrder;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "module_id", nullable = false)
     private Module module;
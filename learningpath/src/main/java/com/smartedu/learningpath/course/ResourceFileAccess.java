@@ -0,0 +1,13 @@
+package com.smartedu.learningpath.course;
+
+/**
+ * Everything needed to decide whether a user may open a resource's file, read in one query.
+ * Null if either the resource or the user does not exist.
+ */
+public interface ResourceFileAccess {
+    String getFilePath();
+    Integer getModuleOrder();
+    Long getUserId();
+    Long getInstructorId();
+    Boolean getEnrolled();
+}
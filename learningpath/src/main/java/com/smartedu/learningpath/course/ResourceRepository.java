@@ -2,7 +2,18 @@
 package com.smartedu.learningpath.course;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ResourceRepository extends JpaRepository<Resource, Long> {}
\ No newline at end of file
+public interface ResourceRepository extends JpaRepository<Resource, Long> {
+
+    @Query("SELECT r.filePath AS filePath, m.moduleOrder AS moduleOrder, u.id AS userId, " +
+            "c.instructor.id AS instructorId, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM Enrollment e WHERE e.student = u AND e.course = c) " +
+            "THEN true ELSE false END AS enrolled " +
+            "FROM Resource r JOIN r.module m JOIN m.course c, User u " +
+            "WHERE r.id = :resourceId AND u.email = :email")
+    ResourceFileAccess findFileAccess(@Param("resourceId") Long resourceId, @Param("email") String email);
+}
@@ -0,0 +1,36 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * One distinct file content in the content-addressed store, kept once on disk under its SHA-256.
+ * {@code refCount} is the number of StoredFile paths pointing at it. Maintained by ContentStore.
+ */
+@Entity
+@Table(name = "stored_blobs")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+    // Lower-case hex SHA-256 of the content
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private long refCount;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
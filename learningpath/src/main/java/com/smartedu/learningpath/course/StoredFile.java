@@ -0,0 +1,38 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A logical upload path (the value kept in Course.thumbnailPath / Resource.filePath)
+ * and the blob that holds its content.
+ */
+@Entity
+@Table(name = "stored_files", indexes = {
+        @Index(name = "idx_stored_files_course_id", columnList = "course_id"),
+        @Index(name = "idx_stored_files_sha256", columnList = "sha256")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    // e.g. "uploads/1/resources/<uuid>_notes.pdf"
+    @Id
+    private String path;
+
+    @Column(length = 64, nullable = false)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long courseId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,47 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * How much of a course a student has completed: the number of completed resources and their
+ * summed estimated time. Incremented by ProgressIngestionService when a resource is completed,
+ * rebalanced by CourseCompletionService when the course's resources change, and backfilled by
+ * SchemaInitializer.
+ */
+@Entity
+@Table(name = "student_course_progress")
+@IdClass(StudentCourseProgress.Key.class)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentCourseProgress {
+
+    @Id
+    @Column(name = "student_id")
+    private Long studentId;
+
+    @Id
+    @Column(name = "course_id")
+    private Long courseId;
+
+    @Column(nullable = false)
+    private int completedResources;
+
+    @Column(nullable = false)
+    private long completedMinutes;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long studentId;
+        private Long courseId;
+    }
+}
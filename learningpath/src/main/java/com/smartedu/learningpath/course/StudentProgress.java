@@ -3,11 +3,16 @@ package com.smartedu.learningpath.course;
 import com.smartedu.learningpath.user.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "student_progress")
+@Table(name = "student_progress", uniqueConstraints = {
+        // One row per student and resource; ProgressIngestionService upserts into it.
+        @UniqueConstraint(name = "uk_student_progress_student_resource", columnNames = {"student_id", "resource_id"})
+})
 @Getter
 @Setter
 @Builder
@@ -27,6 +32,7 @@ public class StudentProgress {
     // The resource this progress is for
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "resource_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE) // resources are deleted by orphan removal when a course is edited
     private Resource resource;
 
     private boolean isCompleted;
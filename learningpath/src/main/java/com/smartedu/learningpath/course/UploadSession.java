@@ -0,0 +1,51 @@
+package com.smartedu.learningpath.course;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable, chunked upload of one course resource file. Chunks are appended straight
+ * to {@code filePath}; {@code receivedBytes} is the offset the next chunk has to start at.
+ * The row is deleted once a course resource references the finished file.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private Long courseId;
+
+    // The instructor who started the upload; only they may append to or use it.
+    @Column(nullable = false)
+    private Long instructorId;
+
+    private String originalFilename;
+
+    // Relative path of the file being written, e.g. "uploads/1/resources/<uuid>_video.mp4"
+    @Column(nullable = false)
+    private String filePath;
+
+    private long totalSize;
+    private long receivedBytes;
+    private boolean completed;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
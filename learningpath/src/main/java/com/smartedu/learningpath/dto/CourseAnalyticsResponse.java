@@ -17,5 +17,4 @@ public class CourseAnalyticsResponse {
     private BigDecimal coursePrice;
     private BigDecimal courseDiscount;
     private List<EnrollmentStatDTO> dailyEnrollments;
-    private List<EnrolledStudentDTO> students;
 }
\ No newline at end of file
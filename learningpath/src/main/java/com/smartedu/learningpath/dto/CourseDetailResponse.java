@@ -15,6 +15,8 @@ public class CourseDetailResponse {
     private String title;
     private String description;
     private String thumbnailPath;
+    // 1280px rendition for the course page; null until generated.
+    private String thumbnailDetailPath;
     private BigDecimal price;
     private BigDecimal discountPercentage;
     private List<ModuleDetailResponse> modules;
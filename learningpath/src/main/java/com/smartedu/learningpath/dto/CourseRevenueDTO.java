@@ -0,0 +1,17 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// One of an instructor's top courses, with its estimated revenue.
+@Data
+@Builder
+public class CourseRevenueDTO {
+    private Long courseId;
+    private String title;
+    private long enrollments;
+    private BigDecimal grossRevenue;
+    private BigDecimal discountedRevenue;
+}
@@ -14,6 +14,9 @@ public class CourseSummaryResponse {
     private String title;
     private String description;
     private String thumbnailPath;
+    // Fixed-width renditions (card: 320px, retina: 640px); null until generated.
+    private String thumbnailCardPath;
+    private String thumbnailRetinaPath;
     private BigDecimal price;
     private BigDecimal discountPercentage;
     private String instructorName;
@@ -24,6 +27,12 @@ public class CourseSummaryResponse {
     private int moduleCount;
     private int enrollmentCount;
 
+    // Only on a student's enrolled-course cards; null elsewhere.
+    private Integer resourceCount;
+    private Integer completedResources;
+    private Integer completionPercentage;
+    private Long remainingMinutes;
+
 
     @JsonProperty("isEnrolled")
     private boolean isEnrolled;
@@ -0,0 +1,27 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * What an update actually changed in a course, as found by diffing the request against the stored tree.
+ */
+@Data
+@Builder
+public class CourseUpdateSummary {
+    private Long courseId;
+    private boolean detailsChanged; // title, description, price, discount or thumbnail
+    private int modulesAdded;
+    private int modulesUpdated;
+    private int modulesReordered;
+    private int modulesRemoved;
+    private int resourcesAdded;
+    private int resourcesUpdated;
+    private int resourcesReordered;
+    private int resourcesRemoved;
+
+    public boolean hasChanges() {
+        return detailsChanged || modulesAdded + modulesUpdated + modulesReordered + modulesRemoved
+                + resourcesAdded + resourcesUpdated + resourcesReordered + resourcesRemoved > 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One slice of a keyset-paginated listing. Unlike Page it carries no total count,
+ * so fetching it never needs a COUNT(*). Pass nextCursor back as "after" to get the next slice.
+ */
+@Data
+@AllArgsConstructor
+public class CursorSliceResponse<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+}
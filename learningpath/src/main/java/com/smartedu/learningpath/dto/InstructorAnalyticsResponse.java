@@ -0,0 +1,25 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+// Analytics across all the courses of one instructor.
+@Data
+@Builder
+public class InstructorAnalyticsResponse {
+    private int courseCount;
+    private long totalEnrollments;
+    // Revenue estimates: enrollments times the current price, before and after the current discount.
+    private BigDecimal grossRevenue;
+    private BigDecimal discountedRevenue;
+    private LocalDate from;
+    private LocalDate to;
+    private List<EnrollmentStatDTO> dailyEnrollments;
+    // Each point is the Monday starting the week.
+    private List<EnrollmentStatDTO> weeklyEnrollments;
+    private List<CourseRevenueDTO> topCourses;
+}
@@ -0,0 +1,12 @@
+package com.smartedu.learningpath.dto;
+
+/**
+ * @param secondsSpent Time spent on the resource since the previous heartbeat.
+ * @param completed Whether the student has finished the resource; completion is never undone.
+ */
+public record ProgressHeartbeatRequest(
+        Long courseId,
+        Long resourceId,
+        long secondsSpent,
+        boolean completed
+) {}
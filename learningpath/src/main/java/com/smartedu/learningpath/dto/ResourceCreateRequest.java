@@ -7,5 +7,6 @@ public record ResourceCreateRequest(
         String title,
         String resourceType, // "PDF", "VIDEO", "LINK"
         String url, // Used for VIDEO and LINK
-        Integer estimatedTimeToCompleteMinutes
+        Integer estimatedTimeToCompleteMinutes,
+        String uploadId // A completed chunked upload (see /api/uploads) to use as this resource's file
 ) {}
\ No newline at end of file
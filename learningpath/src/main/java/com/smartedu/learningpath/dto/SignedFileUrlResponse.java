@@ -0,0 +1,17 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * A short-lived link to a resource file that works without the Authorization header,
+ * e.g. as an iframe src or a plain download link.
+ */
+@Data
+@Builder
+public class SignedFileUrlResponse {
+    private String url;
+    private Instant expiresAt;
+}
@@ -0,0 +1,7 @@
+package com.smartedu.learningpath.dto;
+
+public record UploadInitRequest(
+        Long courseId,
+        String filename,
+        long size
+) {}
@@ -0,0 +1,16 @@
+package com.smartedu.learningpath.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * State of a chunked upload. The next chunk has to be sent with offset = {@code offset}.
+ */
+@Data
+@Builder
+public class UploadStatusResponse {
+    private String uploadId;
+    private long offset;
+    private long size;
+    private boolean completed;
+}
@@ -0,0 +1,12 @@
+package com.smartedu.learningpath.exception;
+
+/**
+ * The request is valid but clashes with the current state of the resource, e.g. a chunk sent
+ * at the wrong offset of an upload. Answered with 409 Conflict.
+ */
+public class ConflictException extends RuntimeException {
+    private static final long serialVersionUID = -2204934158123541878L;
+    public ConflictException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartedu.learningpath.exception;
+
+/**
+ * The storage has no content for a path kept in the database. Unlike an I/O error talking to
+ * the storage, retrying won't help.
+ */
+public class StoredFileNotFoundException extends RuntimeException {
+    private static final long serialVersionUID = 7310524983415296620L;
+    public StoredFileNotFoundException(final String path) {
+        super("File not found: " + path);
+    }
+}
@@ -0,0 +1,290 @@
+package com.smartedu.learningpath.recommendation;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Sparse item-item co-enrollment matrix: for every pair of courses, how many students are
+ * enrolled in both, plus how many students each course has. The similarity of two courses is
+ * the cosine of their enrollment vectors, co(a, b) / sqrt(n(a) * n(b)).
+ *
+ * Everything is keyed by primitive longs (fastutil maps), so a million enrollments don't turn
+ * into millions of boxed Longs. Rows are stored in both directions, so the neighbors of a
+ * course are a single map lookup.
+ *
+ * The full build splits the students across a fork/join pool: every leaf task counts the pairs
+ * of its students into its own maps, and the partial matrices are merged on the way back up.
+ * After that the matrix is updated in place, one enrollment at a time. It is not thread-safe:
+ * a single thread owns it (see RecommendationService); readers use the published Neighbors.
+ */
+public final class CoEnrollmentMatrix {
+
+    // Students per leaf task: large enough that counting dwarfs the cost of merging the partials.
+    private static final int STUDENTS_PER_TASK = 2048;
+    private static final long[] NO_COURSES = new long[0];
+
+    private final Long2ObjectOpenHashMap<long[]> coursesByStudent;
+    private final Long2IntOpenHashMap enrollmentCounts;
+    private final Long2ObjectOpenHashMap<Long2IntOpenHashMap> coCounts;
+
+    private CoEnrollmentMatrix(Long2ObjectOpenHashMap<long[]> coursesByStudent, Counts counts) {
+        this.coursesByStudent = coursesByStudent;
+        this.enrollmentCounts = counts.enrollmentCounts;
+        this.coCounts = counts.coCounts;
+    }
+
+    /**
+     * @param coursesByStudent The course ids of every student, each array sorted and without
+     *                         duplicates. The matrix takes ownership of the map.
+     */
+    public static CoEnrollmentMatrix build(Long2ObjectOpenHashMap<long[]> coursesByStudent, ForkJoinPool pool) {
+        long[][] lists = coursesByStudent.values().toArray(new long[0][]);
+        Counts counts = pool.invoke(new CountTask(lists, 0, lists.length));
+        return new CoEnrollmentMatrix(coursesByStudent, counts);
+    }
+
+    /**
+     * Counts one more enrollment. Idempotent: a student already counted in the course is ignored.
+     * @param changed Receives the courses whose neighbors may have changed.
+     * @return false if the enrollment was already counted.
+     */
+    public boolean addEnrollment(long studentId, long courseId, LongSet changed) {
+        long[] courses = coursesByStudent.getOrDefault(studentId, NO_COURSES);
+        int index = Arrays.binarySearch(courses, courseId);
+        if (index >= 0) {
+            return false;
+        }
+        int insertAt = -index - 1;
+        long[] updated = new long[courses.length + 1];
+        System.arraycopy(courses, 0, updated, 0, insertAt);
+        updated[insertAt] = courseId;
+        System.arraycopy(courses, insertAt, updated, insertAt + 1, courses.length - insertAt);
+        coursesByStudent.put(studentId, updated);
+
+        enrollmentCounts.addTo(courseId, 1);
+        Long2IntOpenHashMap row = row(coCounts, courseId);
+        changed.add(courseId);
+        for (long other : courses) {
+            row.addTo(other, 1);
+            row(coCounts, other).addTo(courseId, 1);
+            changed.add(other);
+        }
+        return true;
+    }
+
+    /**
+     * Drops a deleted course from the matrix. Students keep it in their course lists until the
+     * next full build, which only means a later enrollment of theirs re-creates a stray row.
+     * @param changed Receives the courses that had it as a neighbor.
+     */
+    public void removeCourse(long courseId, LongSet changed) {
+        enrollmentCounts.remove(courseId);
+        Long2IntOpenHashMap row = coCounts.remove(courseId);
+        if (row == null) {
+            return;
+        }
+        for (long other : row.keySet()) {
+            Long2IntOpenHashMap otherRow = coCounts.get(other);
+            if (otherRow != null) {
+                otherRow.remove(courseId);
+            }
+            changed.add(other);
+        }
+    }
+
+    /**
+     * The k courses most similar to the given one, best first; ties go to the lower course id.
+     */
+    public Neighbors topNeighbors(long courseId, int k) {
+        Long2IntOpenHashMap row = coCounts.get(courseId);
+        int count = enrollmentCounts.get(courseId);
+        if (row == null || row.isEmpty() || count == 0) {
+            return Neighbors.NONE;
+        }
+        long[] ids = new long[k];
+        float[] scores = new float[k];
+        int size = 0;
+        int weakest = 0;
+        for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(row)) {
+            long other = entry.getLongKey();
+            int otherCount = enrollmentCounts.get(other);
+            if (entry.getIntValue() <= 0 || otherCount == 0) {
+                continue;
+            }
+            float score = (float) (entry.getIntValue() / Math.sqrt((double) count * otherCount));
+            if (size < k) {
+                ids[size] = other;
+                scores[size] = score;
+                size++;
+                if (size == k) {
+                    weakest = weakest(ids, scores, size);
+                }
+            } else if (ranksAbove(score, other, scores[weakest], ids[weakest])) {
+                ids[weakest] = other;
+                scores[weakest] = score;
+                weakest = weakest(ids, scores, size);
+            }
+        }
+        sortBestFirst(ids, scores, size);
+        return new Neighbors(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size));
+    }
+
+    /**
+     * The top k neighbors of every course, computed in parallel on the given pool.
+     */
+    public Long2ObjectOpenHashMap<Neighbors> topNeighborsOfAll(int k, ForkJoinPool pool) {
+        long[] courses = coCounts.keySet().toLongArray();
+        Neighbors[] neighbors = new Neighbors[courses.length];
+        // A parallel stream started from inside a pool runs its tasks in that pool.
+        pool.submit(() -> IntStream.range(0, courses.length).parallel()
+                .forEach(i -> neighbors[i] = topNeighbors(courses[i], k))).join();
+        Long2ObjectOpenHashMap<Neighbors> all = new Long2ObjectOpenHashMap<>(courses.length);
+        for (int i = 0; i < courses.length; i++) {
+            all.put(courses[i], neighbors[i]);
+        }
+        return all;
+    }
+
+    public int courseCount() {
+        return coCounts.size();
+    }
+
+    public int studentCount() {
+        return coursesByStudent.size();
+    }
+
+    /**
+     * The number of students enrolled in both courses.
+     */
+    public int coEnrollments(long courseId, long otherCourseId) {
+        Long2IntOpenHashMap row = coCounts.get(courseId);
+        return row == null ? 0 : row.get(otherCourseId);
+    }
+
+    private static boolean ranksAbove(float score, long id, float otherScore, long otherId) {
+        return score > otherScore || (score == otherScore && id < otherId);
+    }
+
+    private static int weakest(long[] ids, float[] scores, int size) {
+        int weakest = 0;
+        for (int i = 1; i < size; i++) {
+            if (ranksAbove(scores[weakest], ids[weakest], scores[i], ids[i])) {
+                weakest = i;
+            }
+        }
+        return weakest;
+    }
+
+    // Insertion sort: k is small.
+    private static void sortBestFirst(long[] ids, float[] scores, int size) {
+        for (int i = 1; i < size; i++) {
+            long id = ids[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && ranksAbove(score, id, scores[j], ids[j])) {
+                ids[j + 1] = ids[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            scores[j + 1] = score;
+        }
+    }
+
+    private static Long2IntOpenHashMap row(Long2ObjectOpenHashMap<Long2IntOpenHashMap> coCounts, long courseId) {
+        Long2IntOpenHashMap row = coCounts.get(courseId);
+        if (row == null) {
+            row = new Long2IntOpenHashMap();
+            coCounts.put(courseId, row);
+        }
+        return row;
+    }
+
+    /**
+     * Enrollment and pair counts of a subset of the students.
+     */
+    private static final class Counts {
+        final Long2IntOpenHashMap enrollmentCounts = new Long2IntOpenHashMap();
+        final Long2ObjectOpenHashMap<Long2IntOpenHashMap> coCounts = new Long2ObjectOpenHashMap<>();
+
+        void addStudent(long[] courses) {
+            for (int i = 0; i < courses.length; i++) {
+                enrollmentCounts.addTo(courses[i], 1);
+                Long2IntOpenHashMap row = row(coCounts, courses[i]);
+                for (int j = 0; j < courses.length; j++) {
+                    if (j != i) {
+                        row.addTo(courses[j], 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the smaller of the two into the larger and returns the larger; rows that only
+         * one side has are moved over, not copied.
+         */
+        static Counts merge(Counts a, Counts b) {
+            Counts into = a.coCounts.size() >= b.coCounts.size() ? a : b;
+            Counts from = into == a ? b : a;
+            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(from.enrollmentCounts)) {
+                into.enrollmentCounts.addTo(entry.getLongKey(), entry.getIntValue());
+            }
+            for (Long2ObjectMap.Entry<Long2IntOpenHashMap> entry : Long2ObjectMaps.fastIterable(from.coCounts)) {
+                Long2IntOpenHashMap target = into.coCounts.get(entry.getLongKey());
+                Long2IntOpenHashMap source = entry.getValue();
+                if (target == null) {
+                    into.coCounts.put(entry.getLongKey(), source);
+                    continue;
+                }
+                if (target.size() < source.size()) {
+                    into.coCounts.put(entry.getLongKey(), source);
+                    Long2IntOpenHashMap smaller = target;
+                    target = source;
+                    source = smaller;
+                }
+                for (Long2IntMap.Entry pair : Long2IntMaps.fastIterable(source)) {
+                    target.addTo(pair.getLongKey(), pair.getIntValue());
+                }
+            }
+            return into;
+        }
+    }
+
+    private static final class CountTask extends RecursiveTask<Counts> {
+        private final long[][] lists;
+        private final int from;
+        private final int to;
+
+        CountTask(long[][] lists, int from, int to) {
+            this.lists = lists;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= STUDENTS_PER_TASK) {
+                Counts counts = new Counts();
+                for (int i = from; i < to; i++) {
+                    counts.addStudent(lists[i]);
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(lists, from, middle);
+            left.fork();
+            Counts right = new CountTask(lists, middle, to).compute();
+            return Counts.merge(left.join(), right);
+        }
+    }
+}
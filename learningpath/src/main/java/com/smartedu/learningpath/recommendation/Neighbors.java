@@ -0,0 +1,14 @@
+package com.smartedu.learningpath.recommendation;
+
+/**
+ * The most similar courses of one course, best first: courseIds[i] has cosine similarity scores[i].
+ * Immutable once published; the arrays must not be modified.
+ */
+public record Neighbors(long[] courseIds, float[] scores) {
+
+    public static final Neighbors NONE = new Neighbors(new long[0], new float[0]);
+
+    public int size() {
+        return courseIds.length;
+    }
+}
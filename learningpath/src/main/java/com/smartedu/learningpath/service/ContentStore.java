@@ -0,0 +1,367 @@
+package com.smartedu.learningpath.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.storage.ObjectInfo;
+import com.smartedu.learningpath.storage.ObjectStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed, deduplicating file store behind FileStorageService.
+ *
+ * Every distinct content is kept once in the ObjectStorage, under .cas/{first two hex chars}/{sha256},
+ * with a reference count in {@code stored_blobs}. The paths the rest of the app stores (thumbnailPath,
+ * filePath) are logical: {@code stored_files} maps each one to its blob. Files written before
+ * the store existed have no mapping and are still read from their own path (see {@link #keyOf}).
+ *
+ * Compressible content can have a gzip variant next to its blob ({sha256}.gz), made when the
+ * upload is staged and served to clients that accept gzip.
+ *
+ * A blob is only put or deleted while its stored_blobs row is locked by the current
+ * transaction, so adding a reference can't race with reclaiming the same content. Deleting
+ * unreferenced blobs is left to StorageReclaimer, off the request path.
+ */
+@Component
+public class ContentStore {
+
+    private static final String ADD_BLOB_REFERENCE_SQL =
+            "INSERT INTO stored_blobs (sha256, size, ref_count, created_at) VALUES (?, ?, 1, now()) " +
+            "ON CONFLICT (sha256) DO UPDATE SET ref_count = stored_blobs.ref_count + 1";
+
+    private static final String RELEASE_COURSE_BLOBS_SQL =
+            "UPDATE stored_blobs b SET ref_count = b.ref_count - f.refs " +
+            "FROM (SELECT sha256, count(*) AS refs FROM stored_files WHERE course_id = ? GROUP BY sha256) f " +
+            "WHERE b.sha256 = f.sha256";
+
+    // Worth compressing: text formats, SVG and BMP images, and PDFs (whose uncompressed streams often shrink).
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json", "application/xml", "application/javascript", "application/pdf",
+            "image/svg+xml", "image/bmp");
+    private static final long MIN_COMPRESSIBLE_SIZE = 1024;
+    private static final long MAX_COMPRESSIBLE_SIZE = 100L * 1024 * 1024;
+    // A variant that doesn't save at least 10% isn't worth the extra file.
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    private static final Pattern HEX = Pattern.compile("[0-9a-f]+");
+
+    private static final String LOGICAL_ROOT = "uploads/";
+    private static final String BLOB_PREFIX = ".cas/";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final ObjectStorage storage;
+
+    // Logical path -> sha256. A mapping never changes while it exists, so entries only need
+    // to be dropped when the path is released.
+    private final Cache<String, String> pathCache;
+    // Other caches keyed by logical path, told about released paths along with pathCache.
+    private final List<Consumer<Collection<String>>> releaseListeners = new CopyOnWriteArrayList<>();
+
+    public ContentStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        ObjectStorage storage, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.storage = storage;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pathCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pathCache, "storedFiles");
+    }
+
+    /**
+     * Copies a stream to the target file while computing its SHA-256, in a single pass.
+     * @return The lower-case hex digest of what was written.
+     */
+    public static String copyAndHash(InputStream in, Path target) throws IOException {
+        MessageDigest digest = newSha256();
+        try (DigestInputStream digestIn = new DigestInputStream(in, digest)) {
+            Files.copy(digestIn, target);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Writes a gzip variant of a file to {file}.gz if its type (from the file name) compresses
+     * well and the variant is at least 10% smaller. Meant to run before the transaction, like hashing.
+     * @return The variant, or null if there is none.
+     */
+    public static Path precompress(Path file, String filename) throws IOException {
+        long size = Files.size(file);
+        String type = MediaTypeFactory.getMediaType(String.valueOf(filename))
+                .map(mediaType -> mediaType.getType() + "/" + mediaType.getSubtype())
+                .orElse("");
+        if (size < MIN_COMPRESSIBLE_SIZE || size > MAX_COMPRESSIBLE_SIZE
+                || !(type.startsWith("text/") || COMPRESSIBLE_TYPES.contains(type))) {
+            return null;
+        }
+
+        Path variant = file.resolveSibling(file.getFileName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(variant), 64 * 1024)) {
+            Files.copy(file, out);
+        }
+        if (Files.size(variant) > size * MAX_COMPRESSION_RATIO) {
+            Files.delete(variant);
+            return null;
+        }
+        return variant;
+    }
+
+    public static String sha256Of(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Stores the content of the local file {@code source} under the given logical path. If the content
+     * is already in the store, the source file is simply deleted; otherwise it is put as the new blob
+     * (a rename for local storage, an upload for S3). On rollback the rows go away, and a newly put
+     * blob is removed again unless another transaction has referenced the same content meanwhile.
+     * @param gzipSource A gzip variant of the source (see {@link #precompress}), or null.
+     */
+    @Transactional
+    public void addReference(String logicalPath, Long courseId, Path source, String sha256, long size, Path gzipSource) {
+        jdbcTemplate.update(ADD_BLOB_REFERENCE_SQL, sha256, size); // locks the blob row until commit
+        String blob = blobKey(sha256);
+        try {
+            if (storage.stat(blob).isPresent()) {
+                Files.deleteIfExists(source);
+            } else {
+                storage.put(blob, source);
+                TransactionUtil.afterRollback(() -> removeOrphanBlob(sha256));
+            }
+            if (gzipSource != null) {
+                String variant = gzipVariantKey(blob);
+                if (storage.stat(variant).isPresent()) {
+                    Files.deleteIfExists(gzipSource);
+                } else {
+                    storage.put(variant, gzipSource);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
+        }
+        jdbcTemplate.update("INSERT INTO stored_files (path, sha256, course_id, created_at) VALUES (?, ?, ?, now())",
+                logicalPath, sha256, courseId);
+    }
+
+    @Transactional
+    public void addReference(String logicalPath, Long courseId, Path source, String sha256, long size) {
+        addReference(logicalPath, courseId, source, sha256, size, null);
+    }
+
+    /**
+     * @return The gzip variant stored next to a content object, or empty if there is none.
+     */
+    public Optional<ObjectInfo> gzipVariant(String key) {
+        return stat(gzipVariantKey(key));
+    }
+
+    /**
+     * @return The object holding the content of a logical path, or empty if there is none.
+     */
+    public Optional<ObjectInfo> resolve(String logicalPath) {
+        return resolve(logicalPath, hashOf(logicalPath).orElse(null));
+    }
+
+    /**
+     * Like {@link #resolve(String)}, for a caller that already knows the hash (null for
+     * pre-store files). Does not touch the database.
+     */
+    public Optional<ObjectInfo> resolve(String logicalPath, String sha256) {
+        // Without a hash the file was written before the content store existed.
+        return stat(sha256 != null ? blobKey(sha256) : keyOf(logicalPath));
+    }
+
+    /**
+     * The storage key of a path below the logical root, e.g. "12/thumbnail/cover.png" for
+     * "uploads/12/thumbnail/cover.png". Files from before the content store are kept under it.
+     */
+    public static String keyOf(String logicalPath) {
+        String normalized = logicalPath.replace("\\", "/");
+        if (!normalized.startsWith(LOGICAL_ROOT) || normalized.contains("..")) {
+            throw new IllegalArgumentException("Not a stored path: " + logicalPath);
+        }
+        return normalized.substring(LOGICAL_ROOT.length());
+    }
+
+    /**
+     * @return The SHA-256 of a logical path's content; empty for unknown and pre-store files.
+     */
+    public Optional<String> hashOf(String logicalPath) {
+        return Optional.ofNullable(pathCache.get(logicalPath, path -> jdbcTemplate
+                .queryForList("SELECT sha256 FROM stored_files WHERE path = ?", String.class, path)
+                .stream().findFirst().orElse(null)));
+    }
+
+    /**
+     * Drops every logical path of a course. Shared content stays; blobs no longer referenced
+     * by any course are left for StorageReclaimer to delete.
+     */
+    @Transactional
+    public void releaseCourse(Long courseId) {
+        jdbcTemplate.update(RELEASE_COURSE_BLOBS_SQL, courseId);
+        List<String> paths = jdbcTemplate.queryForList(
+                "DELETE FROM stored_files WHERE course_id = ? RETURNING path", String.class, courseId);
+        TransactionUtil.afterCommit(() -> forget(paths));
+    }
+
+    /**
+     * Drops a single logical path, e.g. an upload that was never attached to a course.
+     */
+    @Transactional
+    public void releasePath(String logicalPath) {
+        List<String> hashes = jdbcTemplate.queryForList(
+                "DELETE FROM stored_files WHERE path = ? RETURNING sha256", String.class, logicalPath);
+        for (String sha256 : hashes) {
+            jdbcTemplate.update("UPDATE stored_blobs SET ref_count = ref_count - 1 WHERE sha256 = ?", sha256);
+        }
+        TransactionUtil.afterCommit(() -> forget(List.of(logicalPath)));
+    }
+
+    /**
+     * Registers a listener called with the logical paths released by each committed
+     * releasePath or releaseCourse, e.g. to evict cached metadata of their content.
+     */
+    public void onPathsReleased(Consumer<Collection<String>> listener) {
+        releaseListeners.add(listener);
+    }
+
+    /**
+     * @return Up to {@code limit} blobs whose reference count has dropped to zero.
+     */
+    public List<String> findUnreferencedBlobs(int limit) {
+        return jdbcTemplate.queryForList("SELECT sha256 FROM stored_blobs WHERE ref_count <= 0 LIMIT ?",
+                String.class, limit);
+    }
+
+    /**
+     * Deletes a blob if its reference count is still zero. The file is deleted while the row is
+     * locked, so a concurrent addReference either sees the row gone and moves its own copy in,
+     * or keeps the blob alive.
+     * @return The bytes freed on disk.
+     */
+    public long reclaimBlob(String sha256) {
+        Long freed = newTransaction.execute(status -> {
+            int deleted = jdbcTemplate.update("DELETE FROM stored_blobs WHERE sha256 = ? AND ref_count <= 0", sha256);
+            return deleted > 0 ? deleteBlobFiles(sha256) : 0L;
+        });
+        return freed == null ? 0 : freed;
+    }
+
+    /**
+     * Deletes a blob file that has no stored_blobs row, e.g. one moved in by a transaction that
+     * rolled back. A placeholder row is inserted first: that waits for any transaction adding the
+     * same content right now, and holds off new ones while the file is deleted.
+     * @return The bytes freed on disk; 0 if the content turned out to be in use.
+     */
+    public long removeOrphanBlob(String sha256) {
+        Long freed = newTransaction.execute(status -> {
+            int inserted = jdbcTemplate.update("INSERT INTO stored_blobs (sha256, size, ref_count, created_at) " +
+                    "VALUES (?, 0, 0, now()) ON CONFLICT (sha256) DO NOTHING", sha256);
+            if (inserted == 0) {
+                return 0L;
+            }
+            long bytes = deleteBlobFiles(sha256);
+            jdbcTemplate.update("DELETE FROM stored_blobs WHERE sha256 = ?", sha256);
+            return bytes;
+        });
+        return freed == null ? 0 : freed;
+    }
+
+    /**
+     * @return The hashes of the blobs (or stray gzip variants) in one shard of the store.
+     */
+    public List<String> blobHashesIn(String shard) throws IOException {
+        try (Stream<ObjectInfo> objects = storage.list(shard)) {
+            return objects.map(object -> object.key().substring(object.key().lastIndexOf('/') + 1))
+                    .map(name -> name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name)
+                    .filter(name -> name.length() == 64 && HEX.matcher(name).matches())
+                    .distinct()
+                    .toList();
+        }
+    }
+
+    /**
+     * @return The shards of the store (".cas/00/" ... ".cas/ff/").
+     */
+    public List<String> blobShards() throws IOException {
+        return storage.listPrefixes(BLOB_PREFIX);
+    }
+
+    private long deleteBlobFiles(String sha256) {
+        long bytes = 0;
+        for (String key : List.of(blobKey(sha256), gzipVariantKey(blobKey(sha256)))) {
+            try {
+                Optional<ObjectInfo> object = storage.stat(key);
+                if (object.isPresent() && storage.delete(key)) {
+                    bytes += object.get().size();
+                }
+            } catch (IOException e) {
+                System.err.println("Could not delete blob " + key + ": " + e.getMessage());
+            }
+        }
+        return bytes;
+    }
+
+    private void forget(Collection<String> paths) {
+        pathCache.invalidateAll(paths);
+        releaseListeners.forEach(listener -> listener.accept(paths));
+    }
+
+    private Optional<ObjectInfo> stat(String key) {
+        try {
+            return storage.stat(key);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the file store. Error: " + e.getMessage());
+        }
+    }
+
+    private static String blobKey(String sha256) {
+        return BLOB_PREFIX + sha256.substring(0, 2) + "/" + sha256;
+    }
+
+    private static String gzipVariantKey(String key) {
+        return key + ".gz";
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
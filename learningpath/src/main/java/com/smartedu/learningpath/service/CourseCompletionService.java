@@ -0,0 +1,64 @@
+package com.smartedu.learningpath.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the completion rollups of a course (course_content_totals and the course's rows of
+ * student_course_progress) in line with its resources. Completions themselves are counted
+ * incrementally by ProgressIngestionService; this only recomputes a course when its resource
+ * set or estimates change, which is rare compared to completions.
+ *
+ * Must run inside the transaction that changed the course, after the JPA changes are flushed.
+ */
+@Service
+@RequiredArgsConstructor
+public class CourseCompletionService {
+
+    private static final String REFRESH_TOTALS_SQL =
+            "INSERT INTO course_content_totals (course_id, resource_count, estimated_minutes) " +
+            "SELECT c.id, count(r.id), COALESCE(sum(r.estimated_time_to_complete_minutes), 0) " +
+            "FROM courses c LEFT JOIN modules m ON m.course_id = c.id LEFT JOIN resources r ON r.module_id = m.id " +
+            "WHERE c.id = ? GROUP BY c.id " +
+            "ON CONFLICT (course_id) DO UPDATE SET resource_count = EXCLUDED.resource_count, " +
+            "estimated_minutes = EXCLUDED.estimated_minutes";
+
+    private static final String DELETE_STUDENTS_SQL = "DELETE FROM student_course_progress WHERE course_id = ?";
+
+    // A completion ingested between the delete and this insert may already have recreated a
+    // student's row; the recount includes it, so it simply replaces the row.
+    private static final String REBALANCE_STUDENTS_SQL =
+            "INSERT INTO student_course_progress (student_id, course_id, completed_resources, completed_minutes) " +
+            "SELECT sp.student_id, m.course_id, count(*), COALESCE(sum(r.estimated_time_to_complete_minutes), 0) " +
+            "FROM student_progress sp JOIN resources r ON r.id = sp.resource_id JOIN modules m ON m.id = r.module_id " +
+            "WHERE m.course_id = ? AND sp.is_completed GROUP BY sp.student_id, m.course_id " +
+            "ON CONFLICT (student_id, course_id) DO UPDATE SET completed_resources = EXCLUDED.completed_resources, " +
+            "completed_minutes = EXCLUDED.completed_minutes";
+
+    private static final String DELETE_TOTALS_SQL = "DELETE FROM course_content_totals WHERE course_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * For a new course: only the totals exist, nobody has completed anything yet.
+     */
+    public void refreshTotals(Long courseId) {
+        jdbcTemplate.update(REFRESH_TOTALS_SQL, courseId);
+    }
+
+    /**
+     * After resources were added, removed or re-estimated: recomputes the totals and every
+     * student's completed count and minutes from their progress rows, in three statements.
+     */
+    public void rebalanceCourse(Long courseId) {
+        jdbcTemplate.update(REFRESH_TOTALS_SQL, courseId);
+        jdbcTemplate.update(DELETE_STUDENTS_SQL, courseId);
+        jdbcTemplate.update(REBALANCE_STUDENTS_SQL, courseId);
+    }
+
+    public void forgetCourse(Long courseId) {
+        jdbcTemplate.update(DELETE_STUDENTS_SQL, courseId);
+        jdbcTemplate.update(DELETE_TOTALS_SQL, courseId);
+    }
+}
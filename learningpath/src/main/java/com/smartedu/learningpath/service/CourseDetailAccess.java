@@ -0,0 +1,33 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.EtagUtil;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * What a particular user gets to see of a course: the cached tree plus the per-user state.
+ * This is enough to compute the HTTP validators without building the response DTO.
+ * @param enrolledAt When the user enrolled, or null if they are not enrolled.
+ */
+public record CourseDetailAccess(CourseDetailCache.CourseTree course, boolean isInstructor, LocalDateTime enrolledAt) {
+
+    public boolean isEnrolled() {
+        return enrolledAt != null;
+    }
+
+    public String etag() {
+        return EtagUtil.strongEtag(course.id(), course.updatedAt(), isInstructor, isEnrolled());
+    }
+
+    /**
+     * The later of the course's last update and the user's enrollment, as both change the response.
+     */
+    public long lastModified() {
+        LocalDateTime lastModified = course.updatedAt();
+        if (enrolledAt != null && enrolledAt.isAfter(lastModified)) {
+            lastModified = enrolledAt;
+        }
+        return lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,128 @@
+package com.smartedu.learningpath.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.course.Course;
+import com.smartedu.learningpath.course.CourseRepository;
+import com.smartedu.learningpath.course.Module;
+import com.smartedu.learningpath.dto.ModuleDetailResponse;
+import com.smartedu.learningpath.dto.ResourceDetailResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache of the full module/resource tree of a course, which is what
+ * GET /api/courses/{id} spends most of its time building.
+ *
+ * Entries are user-independent: enrollment state and the module-1 preview masking are
+ * applied on top by CourseService for every request. Hit/miss/eviction metrics are
+ * published as the "courseDetails" cache (e.g. /actuator/metrics/cache.gets).
+ */
+@Component
+public class CourseDetailCache {
+
+    private static final long MAX_ENTRIES = 1_000;
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    /**
+     * The cached, unmasked tree. Modules are sorted by moduleOrder and every module carries its resources.
+     */
+    public record CourseTree(
+            Long id,
+            Long instructorId,
+            String title,
+            String description,
+            String thumbnailPath,
+            String thumbnailDetailPath,
+            BigDecimal price,
+            BigDecimal discountPercentage,
+            LocalDateTime createdAt,
+            LocalDateTime updatedAt,
+            List<ModuleDetailResponse> modules
+    ) {}
+
+    private final CourseRepository courseRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache<Long, CourseTree> cache;
+
+    public CourseDetailCache(CourseRepository courseRepository,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry) {
+        this.courseRepository = courseRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(TIME_TO_LIVE)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "courseDetails");
+    }
+
+    /**
+     * @return The course tree, loading it from the database on a miss; empty if the course doesn't exist.
+     */
+    public Optional<CourseTree> get(Long courseId) {
+        return Optional.ofNullable(cache.get(courseId, this::load));
+    }
+
+    /**
+     * Evicts a course once the current transaction commits, so a concurrent reader
+     * can't put the pre-commit tree back into the cache.
+     */
+    public void evict(Long courseId) {
+        TransactionUtil.afterCommit(() -> cache.invalidate(courseId));
+    }
+
+    private CourseTree load(Long courseId) {
+        return readOnlyTransaction.execute(status -> courseRepository.findDetailById(courseId)
+                .map(CourseDetailCache::toTree)
+                .orElse(null));
+    }
+
+    private static CourseTree toTree(Course course) {
+        List<ModuleDetailResponse> modules = course.getModules().stream()
+                .sorted(Comparator.comparing(Module::getModuleOrder))
+                .map(module -> ModuleDetailResponse.builder()
+                        .id(module.getId())
+                        .title(module.getTitle())
+                        .moduleOrder(module.getModuleOrder())
+                        .resources(module.getResources().stream()
+                                .map(resource -> ResourceDetailResponse.builder()
+                                        .id(resource.getId())
+                                        .title(resource.getTitle())
+                                        .resourceType(resource.getResourceType().name())
+                                        .url(resource.getUrl())
+                                        .filePath(resource.getFilePath())
+                                        .estimatedTimeToCompleteMinutes(resource.getEstimatedTimeToCompleteMinutes())
+                                        .build())
+                                .toList())
+                        .build())
+                .toList();
+
+        return new CourseTree(
+                course.getId(),
+                course.getInstructor().getId(),
+                course.getTitle(),
+                course.getDescription(),
+                course.getThumbnailPath(),
+                course.getThumbnailDetailPath(),
+                course.getPrice(),
+                course.getDiscountPercentage(),
+                course.getCreatedAt(),
+                course.getUpdatedAt(),
+                modules
+        );
+    }
+}
@@ -0,0 +1,200 @@
+package com.smartedu.learningpath.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.smartedu.learningpath.course.Course;
+import com.smartedu.learningpath.course.CourseRepository;
+import com.smartedu.learningpath.dto.CursorSliceResponse;
+import com.smartedu.learningpath.dto.EnrolledStudentDTO;
+import com.smartedu.learningpath.user.User;
+import com.smartedu.learningpath.user.UserRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The students enrolled in a course, for its instructor: keyset-paginated slices for the
+ * analytics page, and a bulk export (CSV or NDJSON) streamed straight from a database cursor,
+ * so neither holds more than one slice or one fetch batch in memory, however large the course.
+ *
+ * Both are ordered newest enrollment first, (enrollment_date DESC, id DESC), which the
+ * (course_id, enrollment_date, id) index on enrollments serves without sorting.
+ */
+@Service
+public class CourseRosterService {
+
+    public enum ExportFormat { CSV, NDJSON }
+
+    private static final int MAX_SLICE_SIZE = 200;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final String ROSTER_SELECT =
+            "SELECT e.id, e.student_id, u.full_name, u.email, e.enrollment_date " +
+            "FROM enrollments e JOIN users u ON u.id = e.student_id WHERE e.course_id = ? ";
+    private static final String SEARCH_FILTER = "AND (u.full_name ILIKE ? OR u.email ILIKE ?) ";
+    private static final String AFTER_FILTER = "AND (e.enrollment_date, e.id) < (?, ?) ";
+    private static final String ROSTER_ORDER = "ORDER BY e.enrollment_date DESC, e.id DESC ";
+
+    private record RosterRow(Long enrollmentId, EnrolledStudentDTO student) {}
+
+    private static final RowMapper<RosterRow> ROW_MAPPER = (rs, rowNum) -> new RosterRow(
+            rs.getLong("id"),
+            EnrolledStudentDTO.builder()
+                    .userId(rs.getLong("student_id"))
+                    .fullName(rs.getString("full_name"))
+                    .email(rs.getString("email"))
+                    .enrollmentDate(rs.getTimestamp("enrollment_date").toLocalDateTime())
+                    .build());
+
+    private final CourseRepository courseRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectWriter ndjsonWriter;
+
+    public CourseRosterService(CourseRepository courseRepository, UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager, ObjectMapper objectMapper) {
+        this.courseRepository = courseRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // One object per line: the application-wide indentation would break the format.
+        this.ndjsonWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    /**
+     * @param query Matches a part of the student's name or email (case-insensitive); may be blank.
+     * @param after The nextCursor of the previous slice; blank for the first one.
+     */
+    public CursorSliceResponse<EnrolledStudentDTO> findRoster(Long courseId, String instructorEmail, String query,
+                                                              String after, int size) {
+        checkInstructor(courseId, instructorEmail);
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_SLICE_SIZE + ".");
+        }
+        PageCursor cursor = PageCursor.decode(after);
+        if (cursor != null && cursor.createdAt() == null) {
+            throw new IllegalArgumentException("This cursor does not belong to a roster.");
+        }
+
+        StringBuilder sql = new StringBuilder(ROSTER_SELECT);
+        List<Object> params = new ArrayList<>();
+        params.add(courseId);
+        if (query != null && !query.isBlank()) {
+            String pattern = "%" + escapeLike(query.trim()) + "%";
+            sql.append(SEARCH_FILTER);
+            params.add(pattern);
+            params.add(pattern);
+        }
+        if (cursor != null) {
+            sql.append(AFTER_FILTER);
+            params.add(Timestamp.valueOf(cursor.createdAt()));
+            params.add(cursor.id());
+        }
+        sql.append(ROSTER_ORDER).append("LIMIT ?");
+        params.add(size + 1); // the extra row only tells whether there is a next slice
+
+        List<RosterRow> rows = jdbcTemplate.query(sql.toString(), ROW_MAPPER, params.toArray());
+        boolean hasNext = rows.size() > size;
+        List<RosterRow> slice = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            RosterRow last = slice.get(slice.size() - 1);
+            nextCursor = PageCursor.ofCreatedAt(last.student().getEnrollmentDate(), last.enrollmentId()).encode();
+        }
+        return new CursorSliceResponse<>(slice.stream().map(RosterRow::student).toList(), nextCursor, hasNext);
+    }
+
+    /**
+     * Checks access right away and returns a body that writes the whole roster when the response
+     * is sent. Rows go from the cursor to the response one fetch batch at a time.
+     */
+    public StreamingResponseBody exportRoster(Long courseId, String instructorEmail, ExportFormat format) {
+        checkInstructor(courseId, instructorEmail);
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            if (format == ExportFormat.CSV) {
+                writer.write("user_id,full_name,email,enrollment_date\r\n");
+            }
+            RowCallbackHandler writeRow = rs -> {
+                EnrolledStudentDTO student = ROW_MAPPER.mapRow(rs, 0).student();
+                try {
+                    if (format == ExportFormat.CSV) {
+                        writer.write(student.getUserId() + "," + csv(student.getFullName()) + ","
+                                + csv(student.getEmail()) + "," + student.getEnrollmentDate() + "\r\n");
+                    } else {
+                        writer.write(ndjsonWriter.writeValueAsString(student));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // e.g. the client went away; ends the query
+                }
+            };
+            // PostgreSQL only streams with a fetch size inside a transaction; otherwise it buffers every row.
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(ROSTER_SELECT + ROSTER_ORDER);
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                statement.setLong(1, courseId);
+                return statement;
+            }, writeRow));
+            writer.flush();
+        };
+    }
+
+    public static ExportFormat parseFormat(String format) {
+        return switch (format.toLowerCase()) {
+            case "csv" -> ExportFormat.CSV;
+            case "ndjson" -> ExportFormat.NDJSON;
+            default -> throw new IllegalArgumentException("Unsupported export format: " + format + " (use csv or ndjson).");
+        };
+    }
+
+    private void checkInstructor(Long courseId, String instructorEmail) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+        Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new RuntimeException("Course not found"));
+        if (!course.getInstructor().getId().equals(instructor.getId())) {
+            throw new AccessDeniedException("You are not authorized to view the students of this course.");
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Quotes a CSV field when needed. Values that a spreadsheet would run as a formula get a
+     * leading apostrophe, since names and emails are chosen by the students.
+     */
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
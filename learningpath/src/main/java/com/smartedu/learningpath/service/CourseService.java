@@ -1,52 +1,82 @@
 package com.smartedu.learningpath.service;
 
+import com.smartedu.learningpath.EtagUtil;
 import com.smartedu.learningpath.course.*;
 import com.smartedu.learningpath.course.Module;
 import com.smartedu.learningpath.dto.*;
+import com.smartedu.learningpath.service.EnrolledCourseIndex.EnrolledCourseIds;
 import com.smartedu.learningpath.user.Role;
 import com.smartedu.learningpath.user.User;
 import com.smartedu.learningpath.user.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.security.Principal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CourseService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
     private final FileStorageService fileStorageService;
     private final EnrollmentRepository enrollmentRepository;
+    private final EnrollmentCounterService enrollmentCounterService;
+    private final CourseDetailCache courseDetailCache;
+    private final EnrolledCourseIndex enrolledCourseIndex;
+    private final CourseCompletionService courseCompletionService;
+    private final RecommendationService recommendationService;
+    private final TransactionTemplate transactionTemplate;
+    private final UploadService uploadService;
+    private final ThumbnailService thumbnailService;
 
-    @Transactional
+    /**
+     * Files are copied to the staging area concurrently before the transaction starts;
+     * the transaction itself only moves them into place and records their paths.
+     */
     public Course createCourse(
             CourseCreateRequest request,
             MultipartFile thumbnail,
             List<MultipartFile> resourceFiles,
             String instructorEmail
     ) {
-        User instructor = userRepository.findByEmail(instructorEmail)
-                .orElseThrow(() -> new RuntimeException("Instructor not found"));
-
         // Backend validation for discount
         if (request.discountPercentage() != null &&
                 (request.discountPercentage().compareTo(BigDecimal.ZERO) < 0 ||
                         request.discountPercentage().compareTo(new BigDecimal("100")) > 0)) {
             throw new IllegalArgumentException("Discount percentage must be between 0 and 100.");
         }
+        // An upload session belongs to an existing course, so chunked uploads are attached by updating it.
+        boolean referencesUpload = request.modules().stream()
+                .flatMap(module -> module.resources().stream())
+                .anyMatch(resource -> resource.uploadId() != null);
+        if (referencesUpload) {
+            throw new IllegalArgumentException("Chunked uploads can only be attached to an existing course; create it first, then add them by updating it.");
+        }
+
+        try (FileStorageService.StagedUploads uploads = fileStorageService.stage(thumbnail, resourceFiles)) {
+            return transactionTemplate.execute(status -> createCourse(request, uploads, instructorEmail));
+        }
+    }
+
+    private Course createCourse(CourseCreateRequest request, FileStorageService.StagedUploads uploads, String instructorEmail) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
 
         Course course = Course.builder()
                 .title(request.title())
@@ -59,9 +89,10 @@ public class CourseService {
         Course savedCourse = courseRepository.save(course);
         Long courseId = savedCourse.getId();
 
-        if (thumbnail != null && !thumbnail.isEmpty()) {
-            String thumbnailPath = fileStorageService.save(thumbnail, courseId, "thumbnail");
+        if (uploads.thumbnail() != null) {
+            String thumbnailPath = fileStorageService.promote(uploads.thumbnail(), courseId, "thumbnail");
             savedCourse.setThumbnailPath(thumbnailPath);
+            thumbnailService.requestRenditions(courseId, thumbnailPath);
         }
 
         List<Module> modules = new ArrayList<>();
@@ -80,10 +111,8 @@ public class CourseService {
                 Resource.ResourceType type = Resource.ResourceType.valueOf(resourceRequest.resourceType());
                 String filePath = null;
 
-                if (type == Resource.ResourceType.PDF) {
-                    if (resourceFiles != null && resourceFileIndex < resourceFiles.size()) {
-                        filePath = fileStorageService.save(resourceFiles.get(resourceFileIndex++), courseId, "resources");
-                    }
+                if (type == Resource.ResourceType.PDF && resourceFileIndex < uploads.resourceFiles().size()) {
+                    filePath = fileStorageService.promote(uploads.resourceFiles().get(resourceFileIndex++), courseId, "resources");
                 }
 
                 Resource resource = Resource.builder()
@@ -92,6 +121,7 @@ public class CourseService {
                         .url(resourceRequest.url())
                         .filePath(filePath)
                         .estimatedTimeToCompleteMinutes(resourceRequest.estimatedTimeToCompleteMinutes())
+                        .resourceOrder(resources.size() + 1)
                         .module(module)
                         .build();
                 resources.add(resource);
@@ -101,12 +131,18 @@ public class CourseService {
         }
 
         savedCourse.setModules(modules);
-        return courseRepository.save(savedCourse);
+        Course created = courseRepository.saveAndFlush(savedCourse);
+        courseCompletionService.refreshTotals(courseId);
+        return created;
     }
 
 
 
-    public CourseAnalyticsResponse getCourseAnalytics(Long courseId, String instructorEmail) {
+    /**
+     * @param from First day of the daily enrollment series; defaults to the day the course was created.
+     * @param to Last day of the series; defaults to today.
+     */
+    public CourseAnalyticsResponse getCourseAnalytics(Long courseId, String instructorEmail, LocalDate from, LocalDate to) {
         User instructor = userRepository.findByEmail(instructorEmail)
                 .orElseThrow(() -> new RuntimeException("Instructor not found"));
 
@@ -118,41 +154,23 @@ public class CourseService {
             throw new AccessDeniedException("You are not authorized to view analytics for this course.");
         }
 
-        // Fetch all enrollments for this course.
-        List<Enrollment> enrollments = enrollmentRepository.findAllByCourse(course);
-
-        // Process data for the enrollment graph (group by date).
-        Map<LocalDate, Long> dailyCounts = enrollments.stream()
-                .collect(Collectors.groupingBy(
-                        enrollment -> enrollment.getEnrollmentDate().toLocalDate(),
-                        Collectors.counting()
-                ));
-
-        List<EnrollmentStatDTO> dailyStats = dailyCounts.entrySet().stream()
-                .map(entry -> new EnrollmentStatDTO(entry.getKey(), entry.getValue()))
-                .sorted(Comparator.comparing(EnrollmentStatDTO::getDate))
-                .collect(Collectors.toList());
+        LocalDate seriesFrom = from != null ? from : course.getCreatedAt().toLocalDate();
+        LocalDate seriesTo = to != null ? to : LocalDate.now();
+        if (seriesFrom.isAfter(seriesTo)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'.");
+        }
 
-        // Process data for the student list.
-        List<EnrolledStudentDTO> enrolledStudents = enrollments.stream()
-                .map(enrollment -> EnrolledStudentDTO.builder()
-                        .userId(enrollment.getStudent().getId())
-                        .fullName(enrollment.getStudent().getFullName())
-                        .email(enrollment.getStudent().getEmail())
-                        .enrollmentDate(enrollment.getEnrollmentDate())
-                        .build())
-                .sorted(Comparator.comparing(EnrolledStudentDTO::getEnrollmentDate).reversed())
-                .collect(Collectors.toList());
+        // Data for the enrollment graph, from the daily rollup.
+        List<EnrollmentStatDTO> dailyStats = enrollmentCounterService.dailyCountsFor(course.getId(), seriesFrom, seriesTo);
 
-        // Build the final response object.
+        // The roster itself is paged separately (CourseRosterService); only the headline numbers go here.
         return CourseAnalyticsResponse.builder()
                 .courseId(course.getId())
                 .courseTitle(course.getTitle())
-                .totalEnrollments(enrollments.size())
+                .totalEnrollments(enrollmentCounterService.countFor(course.getId()))
                 .coursePrice(course.getPrice()) // ✅ DEFINITIVE FIX
                 .courseDiscount(course.getDiscountPercentage()) // ✅ DEFINITIVE FIX
                 .dailyEnrollments(dailyStats)
-                .students(enrolledStudents)
                 .build();
     }
 
@@ -161,56 +179,25 @@ public class CourseService {
         User user = userRepository.findByEmail(principal.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Pageable pageable = PageRequest.of(page, size);
+        Pageable pageable = PageRequest.of(page, requirePageSize(size));
+        String tsQuery = toPrefixTsQuery(query);
 
         if (user.getRole() == Role.INSTRUCTOR) {
-            // ✅ DEFINITIVE FIX: Pass the Pageable object to the repository method.
-            Page<Course> coursesPage = courseRepository.searchByInstructor(user, query, pageable);
-
-            // Use the built-in .map() function of the Page object to convert the content.
-            return coursesPage.map(course -> {
-                int enrollmentCount = enrollmentRepository.countByCourse(course);
-                return CourseSummaryResponse.builder()
-                        .id(course.getId())
-                        .title(course.getTitle())
-                        .description(course.getDescription())
-                        .thumbnailPath(course.getThumbnailPath())
-                        .price(course.getPrice())
-                        .discountPercentage(course.getDiscountPercentage())
-                        .instructorName(course.getInstructor().getFullName())
-                        .createdAt(course.getCreatedAt())
-                        .updatedAt(course.getUpdatedAt())
-                        .moduleCount(course.getModules().size())
-                        .enrollmentCount(enrollmentCount)
-                        .isEnrolled(false)
-                        .build();
-            });
+            // A blank query matches everything, just like the old LIKE '%%' did.
+            Page<CourseSummaryView> coursesPage = tsQuery.isEmpty()
+                    ? courseRepository.findSummariesByInstructor(user.getId(), pageable)
+                    : courseRepository.searchByInstructor(user.getId(), tsQuery, pageable);
+
+            return toSummaryPage(coursesPage, EnrolledCourseIds.NONE);
 
         } else { // User is a STUDENT
-            Set<Long> enrolledCourseIds = enrollmentRepository.findAllByStudent(user).stream()
-                    .map(enrollment -> enrollment.getCourse().getId())
-                    .collect(Collectors.toSet());
-
-            // ✅ DEFINITIVE FIX: Pass the Pageable object to the repository method.
-            Page<Course> coursesPage = courseRepository.searchAllCourses(query, pageable);
-
-            return coursesPage.map(course -> {
-                int enrollmentCount = enrollmentRepository.countByCourse(course);
-                return CourseSummaryResponse.builder()
-                        .id(course.getId())
-                        .title(course.getTitle())
-                        .description(course.getDescription())
-                        .thumbnailPath(course.getThumbnailPath())
-                        .price(course.getPrice())
-                        .discountPercentage(course.getDiscountPercentage())
-                        .instructorName(course.getInstructor().getFullName())
-                        .createdAt(course.getCreatedAt())
-                        .updatedAt(course.getUpdatedAt())
-                        .moduleCount(course.getModules().size())
-                        .enrollmentCount(enrollmentCount)
-                        .isEnrolled(enrolledCourseIds.contains(course.getId()))
-                        .build();
-            });
+            EnrolledCourseIds enrolledCourseIds = enrolledCourseIndex.forStudent(user.getId());
+
+            Page<CourseSummaryView> coursesPage = tsQuery.isEmpty()
+                    ? courseRepository.findAllSummaries(pageable)
+                    : courseRepository.searchAllCourses(tsQuery, pageable);
+
+            return toSummaryPage(coursesPage, enrolledCourseIds);
         }
     }
 
@@ -219,91 +206,124 @@ public class CourseService {
 
 
 
+    /**
+     * Turns free user input into a PostgreSQL tsquery where every word is a prefix match,
+     * e.g. "spring boo" -> "spring:* & boo:*". Anything that isn't a letter or digit is dropped,
+     * so the result is always safe to hand to to_tsquery().
+     * @return The tsquery string, or an empty string if the input has no searchable words.
+     */
+    private static String toPrefixTsQuery(String query) {
+        if (query == null) {
+            return "";
+        }
+        return Arrays.stream(query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
     public Page<CourseSummaryResponse> findCoursesByInstructor(String instructorEmail, int page, int size) {
         User instructor = userRepository.findByEmail(instructorEmail)
                 .orElseThrow(() -> new RuntimeException("Instructor not found"));
 
-        Pageable pageable = PageRequest.of(page, size);
+        Pageable pageable = PageRequest.of(page, requirePageSize(size));
 
 
-        Page<Course> coursesPage = courseRepository.findByInstructor(instructor, pageable);
+        Page<CourseSummaryView> coursesPage = courseRepository.findSummariesByInstructor(instructor.getId(), pageable);
 
 
-        return coursesPage.map(course -> convertToSummaryDTO(course, false));
+        return toSummaryPage(coursesPage, EnrolledCourseIds.NONE);
     }
 
     public List<CourseSummaryResponse> findAllCourses() {
-        return courseRepository.findAll().stream()
-                .map(course -> {
-
-                    int enrollmentCount = enrollmentRepository.countByCourse(course);
-                    return CourseSummaryResponse.builder()
-                            .id(course.getId())
-                            .title(course.getTitle())
-                            .description(course.getDescription())
-                            .thumbnailPath(course.getThumbnailPath())
-                            .price(course.getPrice())
-                            .discountPercentage(course.getDiscountPercentage())
-                            .instructorName(course.getInstructor().getFullName())
-                            .createdAt(course.getCreatedAt())
-                            .updatedAt(course.getUpdatedAt())
-                            .moduleCount(course.getModules().size())
-                            .enrollmentCount(enrollmentCount)
-                            // isEnrolled is context-dependent, so it's omitted here or defaulted
-                            .isEnrolled(false)
-                            .build();
-                })
-                .collect(Collectors.toList());
+        // isEnrolled is context-dependent, so it's defaulted to false here
+        return toSummaries(courseRepository.findAllSummaries(), EnrolledCourseIds.NONE);
     }
 
-    public CourseDetailResponse findCourseDetailsById(Long courseId, Principal principal) {
-        String email = principal.getName();
+    /**
+     * Runs the access checks for a course detail view and gathers the per-user state,
+     * without building the response. Callers can use it to answer conditional requests.
+     */
+    public CourseDetailAccess resolveCourseDetailAccess(Long courseId, String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        Course course = courseRepository.findById(courseId)
+        // The module/resource tree comes from the cache; only the per-user parts are computed here.
+        CourseDetailCache.CourseTree course = courseDetailCache.get(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found with id: " + courseId));
 
-        boolean isEnrolled = enrollmentRepository.findByStudentAndCourse(user, course).isPresent();
-
-        if (user.getRole() == Role.INSTRUCTOR && !course.getInstructor().getId().equals(user.getId())) {
+        boolean isInstructor = user.getRole() == Role.INSTRUCTOR;
+        if (isInstructor && !course.instructorId().equals(user.getId())) {
             throw new AccessDeniedException("You are not authorized to view this course.");
         }
 
+        // The enrollment date is only looked up for students the index knows to be enrolled.
+        LocalDateTime enrolledAt = !isInstructor && enrolledCourseIndex.forStudent(user.getId()).contains(courseId)
+                ? enrollmentRepository.findEnrollmentDate(user.getId(), courseId).orElse(null)
+                : null;
+        return new CourseDetailAccess(course, isInstructor, enrolledAt);
+    }
+
+    public CourseDetailResponse toCourseDetailResponse(CourseDetailAccess access) {
+        CourseDetailCache.CourseTree course = access.course();
+        boolean isEnrolled = access.isEnrolled();
+
         return CourseDetailResponse.builder()
-                .id(course.getId())
-                .title(course.getTitle())
-                .description(course.getDescription())
-                .thumbnailPath(course.getThumbnailPath())
-                .price(course.getPrice())
-                .discountPercentage(course.getDiscountPercentage())
-                .createdAt(course.getCreatedAt())
-                .updatedAt(course.getUpdatedAt())
+                .id(course.id())
+                .title(course.title())
+                .description(course.description())
+                .thumbnailPath(course.thumbnailPath())
+                .thumbnailDetailPath(course.thumbnailDetailPath())
+                .price(course.price())
+                .discountPercentage(course.discountPercentage())
+                .createdAt(course.createdAt())
+                .updatedAt(course.updatedAt())
                 .isEnrolled(isEnrolled)
-                .modules(course.getModules().stream()
-                        .sorted(Comparator.comparing(Module::getModuleOrder))
+                .modules(course.modules().stream()
                         .map(module -> {
-                            boolean shouldShowContent = isEnrolled || user.getRole() == Role.INSTRUCTOR || module.getModuleOrder() == 1;
+                            boolean shouldShowContent = isEnrolled || access.isInstructor() || module.getModuleOrder() == 1;
+                            if (shouldShowContent) {
+                                return module;
+                            }
+                            // Locked module: the outline is visible, the resources are not.
                             return ModuleDetailResponse.builder()
                                     .id(module.getId())
                                     .title(module.getTitle())
                                     .moduleOrder(module.getModuleOrder())
-                                    .resources(shouldShowContent ? module.getResources().stream()
-                                            .map(resource -> ResourceDetailResponse.builder()
-                                                    .id(resource.getId())
-                                                    .title(resource.getTitle())
-                                                    .resourceType(resource.getResourceType().name())
-                                                    .url(resource.getUrl())
-                                                    .filePath(resource.getFilePath())
-                                                    .estimatedTimeToCompleteMinutes(resource.getEstimatedTimeToCompleteMinutes())
-                                                    .build())
-                                            .collect(Collectors.toList()) : Collections.emptyList())
+                                    .resources(Collections.emptyList())
                                     .build();
                         })
                         .collect(Collectors.toList()))
                 .build();
     }
 
+    /**
+     * ETag of an instructor's course listing. It covers every course of the instructor rather than
+     * just the requested page, so it's cheap to compute and never misses a change.
+     * @param pageParams The paging parameters of the request, since every page is a different body.
+     */
+    public String instructorCoursesEtag(String instructorEmail, Object... pageParams) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+        CourseListingStamp stamp = courseRepository.findInstructorStamp(instructor.getId());
+        return EtagUtil.strongEtag(instructor.getId(), stamp.getCourseCount(), stamp.getLastUpdatedAt(),
+                stamp.getEnrollmentTotal(), enrollmentCounterService.pendingTotal(), Arrays.toString(pageParams));
+    }
+
+    /**
+     * ETag of the student catalog; like instructorCoursesEtag, plus the student's own
+     * enrollments since they drive the isEnrolled flags.
+     */
+    public String studentCatalogEtag(String studentEmail, Object... pageParams) {
+        User student = userRepository.findByEmail(studentEmail)
+                .orElseThrow(() -> new RuntimeException("Student not found"));
+        CourseListingStamp stamp = courseRepository.findCatalogStamp();
+        // The whole id list, not its hash: a collision would answer 304 for a changed page.
+        return EtagUtil.strongEtag(student.getId(), enrolledCourseIndex.forStudent(student.getId()),
+                stamp.getCourseCount(), stamp.getLastUpdatedAt(), stamp.getEnrollmentTotal(),
+                enrollmentCounterService.pendingTotal(), Arrays.toString(pageParams));
+    }
+
     @Transactional
     public EnrollmentResponse enrollStudentInCourse(Long courseId, String studentEmail) {
         User student = userRepository.findByEmail(studentEmail)
@@ -322,6 +342,9 @@ public class CourseService {
                 .build();
 
         Enrollment savedEnrollment = enrollmentRepository.save(enrollment);
+        enrollmentCounterService.recordEnrollment(course.getId(), savedEnrollment.getEnrollmentDate().toLocalDate());
+        enrolledCourseIndex.recordEnrollment(student.getId(), course.getId());
+        recommendationService.recordEnrollment(student.getId(), course.getId());
 
         return EnrollmentResponse.builder()
                 .enrollmentId(savedEnrollment.getId())
@@ -336,22 +359,30 @@ public class CourseService {
         User student = userRepository.findByEmail(studentEmail)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
-        List<Enrollment> enrollments = enrollmentRepository.findAllByStudent(student);
-
-        return enrollments.stream()
-                .map(Enrollment::getCourse)
-                .map(course -> CourseSummaryResponse.builder()
-                        .id(course.getId())
-                        .title(course.getTitle())
-                        .description(course.getDescription())
-                        .thumbnailPath(course.getThumbnailPath())
-                        .price(course.getPrice())
-                        .discountPercentage(course.getDiscountPercentage())
-                        .instructorName(course.getInstructor().getFullName())
-                        .createdAt(course.getCreatedAt())
-                        .updatedAt(course.getUpdatedAt())
-                        .isEnrolled(true)
-                        .build())
+        // One statement for all cards, completion included (see CourseCompletionService).
+        return enrollmentRepository.findEnrolledCourses(student.getId()).stream()
+                .map(course -> {
+                    long total = course.getResourceCount();
+                    long completed = Math.min(course.getCompletedResources(), total);
+                    return CourseSummaryResponse.builder()
+                            .id(course.getId())
+                            .title(course.getTitle())
+                            .description(course.getDescription())
+                            .thumbnailPath(course.getThumbnailPath())
+                            .thumbnailCardPath(course.getThumbnailCardPath())
+                            .thumbnailRetinaPath(course.getThumbnailRetinaPath())
+                            .price(course.getPrice())
+                            .discountPercentage(course.getDiscountPercentage())
+                            .instructorName(course.getInstructorName())
+                            .createdAt(course.getCreatedAt())
+                            .updatedAt(course.getUpdatedAt())
+                            .resourceCount((int) total)
+                            .completedResources((int) completed)
+                            .completionPercentage(total == 0 ? 0 : (int) (completed * 100 / total))
+                            .remainingMinutes(Math.max(0, course.getEstimatedMinutes() - course.getCompletedMinutes()))
+                            .isEnrolled(true)
+                            .build();
+                })
                 .collect(Collectors.toList());
     }
 
@@ -359,53 +390,229 @@ public class CourseService {
         User student = userRepository.findByEmail(studentEmail)
                 .orElseThrow(() -> new RuntimeException("Student not found"));
 
-        Pageable pageable = PageRequest.of(page, size);
+        Pageable pageable = PageRequest.of(page, requirePageSize(size));
 
-        Set<Long> enrolledCourseIds = enrollmentRepository.findAllByStudent(student).stream()
-                .map(enrollment -> enrollment.getCourse().getId())
-                .collect(Collectors.toSet());
+        EnrolledCourseIds enrolledCourseIds = enrolledCourseIndex.forStudent(student.getId());
+
+        Page<CourseSummaryView> coursesPage = courseRepository.findAllSummaries(pageable);
+
+        return toSummaryPage(coursesPage, enrolledCourseIds);
+    }
 
-        // ✅ DEFINITIVE FIX: This now correctly fetches a paginated list from the repository.
-        Page<Course> coursesPage = courseRepository.findAll(pageable);
+    // --- Recommendations ("students also took"), ranked by RecommendationService ---
 
-        // Use the new helper method to convert the page content.
-        return coursesPage.map(course -> convertToSummaryDTO(course, enrolledCourseIds.contains(course.getId())));
+    /**
+     * Courses often taken together with the given one. For students, courses they already
+     * have are left out.
+     */
+    public List<CourseSummaryResponse> findSimilarCourses(Long courseId, String email, int limit) {
+        requireRecommendationLimit(limit);
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        EnrolledCourseIds enrolledCourseIds = user.getRole() == Role.INSTRUCTOR
+                ? EnrolledCourseIds.NONE : enrolledCourseIndex.forStudent(user.getId());
+
+        List<Long> ids = recommendationService.similarCourses(courseId, RecommendationService.NEIGHBORS_PER_COURSE).stream()
+                .filter(id -> !enrolledCourseIds.contains(id))
+                .limit(limit)
+                .toList();
+        return toRankedSummaries(ids, enrolledCourseIds);
     }
 
     /**
-     * A private helper method to convert a Course entity to a CourseSummaryResponse DTO.
+     * Courses for the student's catalog, from the neighbors of everything they're enrolled in.
+     */
+    public List<CourseSummaryResponse> recommendCoursesForStudent(String studentEmail, int limit) {
+        requireRecommendationLimit(limit);
+        User student = userRepository.findByEmail(studentEmail)
+                .orElseThrow(() -> new RuntimeException("Student not found"));
+        EnrolledCourseIds enrolledCourseIds = enrolledCourseIndex.forStudent(student.getId());
+
+        List<Long> ids = recommendationService.recommendedCourses(enrolledCourseIds.toArray(), limit);
+        return toRankedSummaries(ids, enrolledCourseIds);
+    }
+
+    private static void requireRecommendationLimit(int limit) {
+        if (limit < 1 || limit > RecommendationService.NEIGHBORS_PER_COURSE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + RecommendationService.NEIGHBORS_PER_COURSE + ".");
+        }
+    }
+
+    /**
+     * Loads the cards of the given courses in one query and returns them in the given order.
+     * Courses deleted since they were ranked are skipped.
+     */
+    private List<CourseSummaryResponse> toRankedSummaries(List<Long> ids, EnrolledCourseIds enrolledCourseIds) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, CourseSummaryView> byId = courseRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(CourseSummaryView::getId, course -> course));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(course -> convertToSummaryDTO(course, enrolledCourseIds.contains(course.getId())))
+                .toList();
+    }
+
+    // --- Keyset (cursor) pagination variants of the listings above ---
+    // Each slice costs the same no matter how deep the client has scrolled: no OFFSET, no COUNT(*).
+
+    public CursorSliceResponse<CourseSummaryResponse> findAllCoursesForStudent(String studentEmail, String after, int size) {
+        User student = userRepository.findByEmail(studentEmail)
+                .orElseThrow(() -> new RuntimeException("Student not found"));
+
+        PageCursor cursor = requireCreatedAtCursor(PageCursor.decode(after));
+        Pageable limit = PageRequest.of(0, requirePageSize(size) + 1);
+        List<CourseSummaryView> courses = cursor == null
+                ? courseRepository.findCatalogSlice(limit)
+                : courseRepository.findCatalogSliceAfter(cursor.createdAt(), cursor.id(), limit);
+
+        return toCreatedAtSlice(courses, size, enrolledCourseIndex.forStudent(student.getId()));
+    }
+
+    public CursorSliceResponse<CourseSummaryResponse> findCoursesByInstructor(String instructorEmail, String after, int size) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+
+        PageCursor cursor = requireCreatedAtCursor(PageCursor.decode(after));
+        Pageable limit = PageRequest.of(0, requirePageSize(size) + 1);
+        List<CourseSummaryView> courses = cursor == null
+                ? courseRepository.findInstructorSlice(instructor.getId(), limit)
+                : courseRepository.findInstructorSliceAfter(instructor.getId(), cursor.createdAt(), cursor.id(), limit);
+
+        return toCreatedAtSlice(courses, size, EnrolledCourseIds.NONE);
+    }
+
+    public CursorSliceResponse<CourseSummaryResponse> searchCourses(String query, String after, int size, Principal principal) {
+        User user = userRepository.findByEmail(principal.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        boolean isInstructor = user.getRole() == Role.INSTRUCTOR;
+        String tsQuery = toPrefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            // Nothing to rank by, so fall back to the newest-first listing.
+            return isInstructor
+                    ? findCoursesByInstructor(user.getEmail(), after, size)
+                    : findAllCoursesForStudent(user.getEmail(), after, size);
+        }
+
+        requirePageSize(size);
+        PageCursor cursor = PageCursor.decode(after);
+        if (cursor != null && cursor.rank() == null) {
+            throw new IllegalArgumentException("This cursor does not belong to a search result.");
+        }
+        float afterRank = cursor == null ? Float.POSITIVE_INFINITY : cursor.rank();
+        Long afterId = cursor == null ? Long.MAX_VALUE : cursor.id();
+
+        List<CourseSearchView> rows = isInstructor
+                ? courseRepository.searchByInstructorAfter(user.getId(), tsQuery, afterRank, afterId, size + 1)
+                : courseRepository.searchAllCoursesAfter(tsQuery, afterRank, afterId, size + 1);
+
+        boolean hasNext = rows.size() > size;
+        List<CourseSearchView> courses = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            CourseSearchView last = courses.get(courses.size() - 1);
+            nextCursor = PageCursor.ofRank(last.getRank(), last.getId()).encode();
+        }
+        EnrolledCourseIds enrolledCourseIds = isInstructor ? EnrolledCourseIds.NONE : enrolledCourseIndex.forStudent(user.getId());
+        return new CursorSliceResponse<>(toSummaries(courses, enrolledCourseIds), nextCursor, hasNext);
+    }
+
+    /**
+     * Rejects sizes outside 1..MAX_PAGE_SIZE; the slices fetch size + 1 rows, so the bound
+     * also keeps that from overflowing.
+     */
+    private static int requirePageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Size must be between 1 and " + MAX_PAGE_SIZE + ".");
+        }
+        return size;
+    }
+
+    private static PageCursor requireCreatedAtCursor(PageCursor cursor) {
+        if (cursor != null && cursor.createdAt() == null) {
+            throw new IllegalArgumentException("This cursor does not belong to a course listing.");
+        }
+        return cursor;
+    }
+
+    /**
+     * Builds a slice from up to size + 1 rows ordered by (createdAt DESC, id DESC);
+     * the extra row only tells us whether there is a next slice.
+     */
+    private CursorSliceResponse<CourseSummaryResponse> toCreatedAtSlice(List<CourseSummaryView> rows, int size, EnrolledCourseIds enrolledCourseIds) {
+        boolean hasNext = rows.size() > size;
+        List<CourseSummaryView> courses = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            CourseSummaryView last = courses.get(courses.size() - 1);
+            nextCursor = PageCursor.ofCreatedAt(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorSliceResponse<>(toSummaries(courses, enrolledCourseIds), nextCursor, hasNext);
+    }
+
+    private Page<CourseSummaryResponse> toSummaryPage(Page<CourseSummaryView> coursesPage, EnrolledCourseIds enrolledCourseIds) {
+        return new PageImpl<>(toSummaries(coursesPage.getContent(), enrolledCourseIds),
+                coursesPage.getPageable(), coursesPage.getTotalElements());
+    }
+
+    private List<CourseSummaryResponse> toSummaries(List<? extends CourseSummaryView> courses, EnrolledCourseIds enrolledCourseIds) {
+        return courses.stream()
+                .map(course -> convertToSummaryDTO(course, enrolledCourseIds.contains(course.getId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A private helper method to convert a summary row to a CourseSummaryResponse DTO.
      * This reduces code duplication and ensures all summary views are consistent.
      */
-    private CourseSummaryResponse convertToSummaryDTO(Course course, boolean isEnrolled) {
-        int enrollmentCount = enrollmentRepository.countByCourse(course);
+    private CourseSummaryResponse convertToSummaryDTO(CourseSummaryView course, boolean isEnrolled) {
         return CourseSummaryResponse.builder()
                 .id(course.getId())
                 .title(course.getTitle())
                 .description(course.getDescription())
                 .thumbnailPath(course.getThumbnailPath())
+                .thumbnailCardPath(course.getThumbnailCardPath())
+                .thumbnailRetinaPath(course.getThumbnailRetinaPath())
                 .price(course.getPrice())
                 .discountPercentage(course.getDiscountPercentage())
-                .instructorName(course.getInstructor().getFullName())
+                .instructorName(course.getInstructorName())
                 .createdAt(course.getCreatedAt())
                 .updatedAt(course.getUpdatedAt())
-                .moduleCount(course.getModules().size())
-                .enrollmentCount(enrollmentCount)
+                .moduleCount(course.getModuleCount().intValue())
+                .enrollmentCount(enrollmentCounterService.withPending(course.getId(), course.getEnrollmentCount()))
                 .isEnrolled(isEnrolled)
                 .build();
     }
 
-    @Transactional
-    public Course updateCourse(
+    /**
+     * Like createCourse, stages the uploaded files before the transaction starts.
+     */
+    public CourseUpdateSummary updateCourse(
             Long courseId,
             CourseCreateRequest request,
             MultipartFile thumbnail,
             List<MultipartFile> resourceFiles,
             String instructorEmail
+    ) {
+        try (FileStorageService.StagedUploads uploads = fileStorageService.stage(thumbnail, resourceFiles)) {
+            return transactionTemplate.execute(status -> updateCourse(courseId, request, uploads, instructorEmail));
+        }
+    }
+
+    private CourseUpdateSummary updateCourse(
+            Long courseId,
+            CourseCreateRequest request,
+            FileStorageService.StagedUploads uploads,
+            String instructorEmail
     ) {
         User instructor = userRepository.findByEmail(instructorEmail)
                 .orElseThrow(() -> new RuntimeException("Instructor not found"));
 
-        Course course = courseRepository.findById(courseId)
+        // The whole tree in two statements; the diff below only writes what changed.
+        Course course = courseRepository.findDetailById(courseId)
                 .orElseThrow(() -> new RuntimeException("Course not found"));
 
         if (!course.getInstructor().getId().equals(instructor.getId())) {
@@ -418,58 +625,171 @@ public class CourseService {
             throw new IllegalArgumentException("Discount percentage must be between 0 and 100.");
         }
 
-        Map<Long, String> existingFilePaths = course.getModules().stream()
-                .flatMap(module -> module.getResources().stream())
-                .filter(resource -> resource.getFilePath() != null)
-                .collect(Collectors.toMap(Resource::getId, Resource::getFilePath));
+        CourseUpdateSummary changes = CourseUpdateSummary.builder().courseId(courseId).build();
 
+        changes.setDetailsChanged(!Objects.equals(course.getTitle(), request.title())
+                || !Objects.equals(course.getDescription(), request.description())
+                || !sameAmount(course.getPrice(), request.price())
+                || !sameAmount(course.getDiscountPercentage(), request.discountPercentage()));
         course.setTitle(request.title());
         course.setDescription(request.description());
         course.setPrice(request.price());
         course.setDiscountPercentage(request.discountPercentage());
 
-        if (thumbnail != null && !thumbnail.isEmpty()) {
-            String newThumbnailPath = fileStorageService.save(thumbnail, courseId, "thumbnail");
+        if (uploads.thumbnail() != null) {
+            String newThumbnailPath = fileStorageService.promote(uploads.thumbnail(), courseId, "thumbnail");
             course.setThumbnailPath(newThumbnailPath);
+            // The old renditions show the old image; clients use the original until the new ones are ready.
+            course.setThumbnailCardPath(null);
+            course.setThumbnailRetinaPath(null);
+            course.setThumbnailDetailPath(null);
+            thumbnailService.requestRenditions(courseId, newThumbnailPath);
+            changes.setDetailsChanged(true);
         }
 
-        course.getModules().clear();
-        courseRepository.flush();
+        // A resource that moved to another module becomes a new row there, but keeps its file.
+        Map<Long, String> existingFilePaths = course.getModules().stream()
+                .flatMap(module -> module.getResources().stream())
+                .filter(resource -> resource.getFilePath() != null)
+                .collect(Collectors.toMap(Resource::getId, Resource::getFilePath));
+
+        Map<Long, Module> unmatchedModules = course.getModules().stream()
+                .collect(Collectors.toMap(Module::getId, module -> module));
 
-        List<Module> updatedModules = new ArrayList<>();
         int newFileIndex = 0;
         for (int i = 0; i < request.modules().size(); i++) {
             var moduleRequest = request.modules().get(i);
-            Module module = new Module();
-            module.setTitle(moduleRequest.title());
-            module.setModuleOrder(i + 1);
-            module.setCourse(course);
+            int moduleOrder = i + 1;
+
+            Module module = moduleRequest.id() == null ? null : unmatchedModules.remove(moduleRequest.id());
+            if (module == null) {
+                module = Module.builder()
+                        .title(moduleRequest.title())
+                        .moduleOrder(moduleOrder)
+                        .course(course)
+                        .resources(new ArrayList<>())
+                        .build();
+                course.getModules().add(module);
+                changes.setModulesAdded(changes.getModulesAdded() + 1);
+            } else {
+                if (!Objects.equals(module.getTitle(), moduleRequest.title())) {
+                    module.setTitle(moduleRequest.title());
+                    changes.setModulesUpdated(changes.getModulesUpdated() + 1);
+                }
+                if (module.getModuleOrder() != moduleOrder) {
+                    module.setModuleOrder(moduleOrder);
+                    changes.setModulesReordered(changes.getModulesReordered() + 1);
+                }
+            }
 
-            List<Resource> updatedResources = new ArrayList<>();
-            for (var resourceRequest : moduleRequest.resources()) {
-                Resource resource = new Resource();
-                resource.setTitle(resourceRequest.title());
-                resource.setResourceType(Resource.ResourceType.valueOf(resourceRequest.resourceType()));
-                resource.setUrl(resourceRequest.url());
-                resource.setEstimatedTimeToCompleteMinutes(resourceRequest.estimatedTimeToCompleteMinutes());
-                resource.setModule(module);
-
-                if (resourceRequest.id() != null && existingFilePaths.containsKey(resourceRequest.id())) {
+            newFileIndex = diffResources(module, moduleRequest.resources(), existingFilePaths,
+                    uploads.resourceFiles(), newFileIndex, courseId, changes);
+        }
+
+        // Modules missing from the request were removed; orphanRemoval deletes them with their resources.
+        for (Module removed : unmatchedModules.values()) {
+            changes.setResourcesRemoved(changes.getResourcesRemoved() + removed.getResources().size());
+        }
+        changes.setModulesRemoved(unmatchedModules.size());
+        course.getModules().removeAll(unmatchedModules.values());
+
+        if (changes.getResourcesAdded() + changes.getResourcesUpdated() + changes.getResourcesRemoved() > 0) {
+            // The rollups are rebuilt with SQL, which must see the new resource rows.
+            courseRepository.flush();
+            courseCompletionService.rebalanceCourse(courseId);
+        }
+        if (changes.hasChanges()) {
+            // Tree-only edits don't dirty the course row, but its updatedAt feeds the HTTP validators.
+            course.setUpdatedAt(LocalDateTime.now());
+            courseDetailCache.evict(courseId);
+        }
+        return changes;
+    }
+
+    /**
+     * Brings a module's resources in line with the request: matched resources (by id, within the
+     * same module) are updated in place, the rest are inserted or deleted.
+     * @return The index of the next unused uploaded file.
+     */
+    private int diffResources(
+            Module module,
+            List<ResourceCreateRequest> resourceRequests,
+            Map<Long, String> existingFilePaths,
+            List<FileStorageService.StagedFile> resourceFiles,
+            int newFileIndex,
+            Long courseId,
+            CourseUpdateSummary changes
+    ) {
+        Long instructorId = module.getCourse().getInstructor().getId();
+        Map<Long, Resource> unmatchedResources = module.getResources().stream()
+                .collect(Collectors.toMap(Resource::getId, resource -> resource));
+
+        for (int j = 0; j < resourceRequests.size(); j++) {
+            var resourceRequest = resourceRequests.get(j);
+            Resource.ResourceType type = Resource.ResourceType.valueOf(resourceRequest.resourceType());
+            int resourceOrder = j + 1;
+
+            Resource resource = resourceRequest.id() == null ? null : unmatchedResources.remove(resourceRequest.id());
+            boolean counted; // as added or updated
+            if (resource == null) {
+                resource = Resource.builder()
+                        .title(resourceRequest.title())
+                        .resourceType(type)
+                        .url(resourceRequest.url())
+                        .estimatedTimeToCompleteMinutes(resourceRequest.estimatedTimeToCompleteMinutes())
+                        .resourceOrder(resourceOrder)
+                        .module(module)
+                        .build();
+                if (resourceRequest.uploadId() != null) {
+                    resource.setFilePath(uploadService.claim(resourceRequest.uploadId(), courseId, instructorId));
+                } else if (resourceRequest.id() != null && existingFilePaths.containsKey(resourceRequest.id())) {
                     resource.setFilePath(existingFilePaths.get(resourceRequest.id()));
-                } else if (resourceRequest.resourceType().equals("PDF")) {
-                    if (resourceFiles != null && newFileIndex < resourceFiles.size()) {
-                        String filePath = fileStorageService.save(resourceFiles.get(newFileIndex++), courseId, "resources");
-                        resource.setFilePath(filePath);
-                    }
                 }
-                updatedResources.add(resource);
+                module.getResources().add(resource);
+                changes.setResourcesAdded(changes.getResourcesAdded() + 1);
+                counted = true;
+            } else {
+                boolean updated = !Objects.equals(resource.getTitle(), resourceRequest.title())
+                        || resource.getResourceType() != type
+                        || !Objects.equals(resource.getUrl(), resourceRequest.url())
+                        || !Objects.equals(resource.getEstimatedTimeToCompleteMinutes(), resourceRequest.estimatedTimeToCompleteMinutes())
+                        || resourceRequest.uploadId() != null;
+                if (resourceRequest.uploadId() != null) {
+                    // A new chunked upload replaces the resource's file.
+                    resource.setFilePath(uploadService.claim(resourceRequest.uploadId(), courseId, instructorId));
+                }
+                if (updated) {
+                    resource.setTitle(resourceRequest.title());
+                    resource.setResourceType(type);
+                    resource.setUrl(resourceRequest.url());
+                    resource.setEstimatedTimeToCompleteMinutes(resourceRequest.estimatedTimeToCompleteMinutes());
+                    changes.setResourcesUpdated(changes.getResourcesUpdated() + 1);
+                }
+                counted = updated;
+                if (!Objects.equals(resource.getResourceOrder(), resourceOrder)) {
+                    resource.setResourceOrder(resourceOrder);
+                    changes.setResourcesReordered(changes.getResourcesReordered() + 1);
+                }
+            }
+
+            // PDFs without a file take the next uploaded one, in request order.
+            if (type == Resource.ResourceType.PDF && resource.getFilePath() == null
+                    && newFileIndex < resourceFiles.size()) {
+                resource.setFilePath(fileStorageService.promote(resourceFiles.get(newFileIndex++), courseId, "resources"));
+                if (!counted) {
+                    // Attaching a file to an existing resource changes what clients download.
+                    changes.setResourcesUpdated(changes.getResourcesUpdated() + 1);
+                }
             }
-            module.setResources(updatedResources);
-            updatedModules.add(module);
         }
 
-        course.getModules().addAll(updatedModules);
-        return courseRepository.save(course);
+        changes.setResourcesRemoved(changes.getResourcesRemoved() + unmatchedResources.size());
+        module.getResources().removeAll(unmatchedResources.values());
+        return newFileIndex;
+    }
+
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
     }
 
     @Transactional
@@ -483,9 +803,14 @@ public class CourseService {
         if (!course.getInstructor().getId().equals(instructor.getId())) {
             throw new AccessDeniedException("You are not authorized to delete this course.");
         }
+        courseDetailCache.evict(courseId);
 
         enrollmentRepository.deleteAllByCourse(course);
-        fileStorageService.deleteCourseDirectory(courseId);
+        enrollmentCounterService.forgetCourse(courseId);
+        enrolledCourseIndex.forgetCourse(courseId);
+        courseCompletionService.forgetCourse(courseId);
+        recommendationService.forgetCourse(courseId);
+        fileStorageService.releaseCourseFiles(courseId);
         courseRepository.delete(course);
     }
 }
\ No newline at end of file
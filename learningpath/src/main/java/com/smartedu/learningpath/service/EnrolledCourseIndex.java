@@ -0,0 +1,140 @@
+package com.smartedu.learningpath.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.course.EnrollmentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-student cache of the ids of the courses they are enrolled in, used to set the
+ * isEnrolled flag on catalog and search pages.
+ *
+ * Each entry is a sorted long[] loaded with an id-only query, so a lookup is a binary search
+ * and a student with 100 enrollments costs under a kilobyte. Entries are updated in place
+ * after enrollments and course deletions commit instead of being reloaded.
+ */
+@Component
+public class EnrolledCourseIndex {
+
+    private static final long MAX_STUDENTS = 50_000;
+    private static final Duration IDLE_TIME = Duration.ofMinutes(30);
+
+    /**
+     * Immutable, sorted set of course ids.
+     */
+    public static final class EnrolledCourseIds {
+
+        public static final EnrolledCourseIds NONE = new EnrolledCourseIds(new long[0]);
+
+        private final long[] sortedIds;
+
+        private EnrolledCourseIds(long[] sortedIds) {
+            this.sortedIds = sortedIds;
+        }
+
+        static EnrolledCourseIds of(List<Long> courseIds) {
+            long[] ids = courseIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            return new EnrolledCourseIds(ids);
+        }
+
+        public boolean contains(long courseId) {
+            return Arrays.binarySearch(sortedIds, courseId) >= 0;
+        }
+
+        public int size() {
+            return sortedIds.length;
+        }
+
+        /**
+         * @return A sorted copy of the ids.
+         */
+        public long[] toArray() {
+            return sortedIds.clone();
+        }
+
+        EnrolledCourseIds with(long courseId) {
+            int index = Arrays.binarySearch(sortedIds, courseId);
+            if (index >= 0) {
+                return this;
+            }
+            int insertAt = -index - 1;
+            long[] ids = new long[sortedIds.length + 1];
+            System.arraycopy(sortedIds, 0, ids, 0, insertAt);
+            ids[insertAt] = courseId;
+            System.arraycopy(sortedIds, insertAt, ids, insertAt + 1, sortedIds.length - insertAt);
+            return new EnrolledCourseIds(ids);
+        }
+
+        EnrolledCourseIds without(long courseId) {
+            int index = Arrays.binarySearch(sortedIds, courseId);
+            if (index < 0) {
+                return this;
+            }
+            long[] ids = new long[sortedIds.length - 1];
+            System.arraycopy(sortedIds, 0, ids, 0, index);
+            System.arraycopy(sortedIds, index + 1, ids, index, sortedIds.length - index - 1);
+            return new EnrolledCourseIds(ids);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof EnrolledCourseIds that && Arrays.equals(sortedIds, that.sortedIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(sortedIds);
+        }
+
+        /**
+         * The full sorted id list, e.g. "[3, 8, 21]"; part of the catalog ETag.
+         */
+        @Override
+        public String toString() {
+            return Arrays.toString(sortedIds);
+        }
+    }
+
+    private final EnrollmentRepository enrollmentRepository;
+    private final Cache<Long, EnrolledCourseIds> cache;
+
+    public EnrolledCourseIndex(EnrollmentRepository enrollmentRepository, MeterRegistry meterRegistry) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_STUDENTS)
+                .expireAfterAccess(IDLE_TIME)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "enrolledCourses");
+    }
+
+    public EnrolledCourseIds forStudent(Long studentId) {
+        return cache.get(studentId, id -> EnrolledCourseIds.of(enrollmentRepository.findCourseIdsByStudentId(id)));
+    }
+
+    /**
+     * Adds the course to the student's entry once the enrollment commits. Students that aren't
+     * cached are left alone; their next lookup loads the committed state anyway.
+     */
+    public void recordEnrollment(Long studentId, Long courseId) {
+        TransactionUtil.afterCommit(() ->
+                cache.asMap().computeIfPresent(studentId, (id, ids) -> ids.with(courseId)));
+    }
+
+    /**
+     * Removes a deleted course from every cached student once the deletion commits.
+     * A load racing with this may keep the id, which is harmless: ids are never reused
+     * and a deleted course no longer shows up in any listing.
+     */
+    public void forgetCourse(Long courseId) {
+        TransactionUtil.afterCommit(() ->
+                cache.asMap().replaceAll((id, ids) -> ids.without(courseId)));
+    }
+}
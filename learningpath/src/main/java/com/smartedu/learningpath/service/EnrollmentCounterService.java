@@ -0,0 +1,209 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.course.CourseDailyEnrollment;
+import com.smartedu.learningpath.course.CourseDailyEnrollmentRepository;
+import com.smartedu.learningpath.course.CourseEnrollmentCounter;
+import com.smartedu.learningpath.course.CourseEnrollmentCounterRepository;
+import com.smartedu.learningpath.dto.EnrollmentStatDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the per-course enrollment counters in {@code course_enrollment_counters} and the
+ * per-course, per-day rollup in {@code course_daily_enrollments}.
+ *
+ * New enrollments are added to striped in-memory accumulators (one LongAdder per course and
+ * one per course and day) and written to the database in batches, so a popular course doesn't
+ * turn every enrollment into a contended UPDATE on the same row. Reads always add the
+ * not-yet-flushed delta, so callers see exact numbers on this node.
+ */
+@Service
+@RequiredArgsConstructor
+public class EnrollmentCounterService {
+
+    private static final long FLUSH_INTERVAL_MS = 2000;
+
+    // Only creates the counter while the course still exists, so a flush racing
+    // with a course deletion can't resurrect its counter row.
+    private static final String UPSERT_SQL =
+            "INSERT INTO course_enrollment_counters (course_id, enrollment_count) " +
+            "SELECT c.id, ? FROM courses c WHERE c.id = ? " +
+            "ON CONFLICT (course_id) DO UPDATE " +
+            "SET enrollment_count = course_enrollment_counters.enrollment_count + EXCLUDED.enrollment_count";
+
+    private static final String UPSERT_DAILY_SQL =
+            "INSERT INTO course_daily_enrollments (course_id, enrollment_day, enrollment_count) " +
+            "SELECT c.id, ?, ? FROM courses c WHERE c.id = ? " +
+            "ON CONFLICT (course_id, enrollment_day) DO UPDATE " +
+            "SET enrollment_count = course_daily_enrollments.enrollment_count + EXCLUDED.enrollment_count";
+
+    private record CourseDay(Long courseId, LocalDate day) {}
+
+    private final CourseEnrollmentCounterRepository counterRepository;
+    private final CourseDailyEnrollmentRepository dailyRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ConcurrentHashMap<Long, LongAdder> pendingDeltas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<CourseDay, LongAdder> pendingDailyDeltas = new ConcurrentHashMap<>();
+
+    /**
+     * Counts a new enrollment once the enclosing transaction commits.
+     * @param day The day of the enrollment (its enrollment date).
+     */
+    public void recordEnrollment(Long courseId, LocalDate day) {
+        TransactionUtil.afterCommit(() -> {
+            pendingDeltas.computeIfAbsent(courseId, id -> new LongAdder()).increment();
+            pendingDailyDeltas.computeIfAbsent(new CourseDay(courseId, day), key -> new LongAdder()).increment();
+        });
+    }
+
+    /**
+     * Drops the counter and daily rollup of a course that is being deleted.
+     */
+    public void forgetCourse(Long courseId) {
+        counterRepository.deleteByCourseId(courseId);
+        dailyRepository.deleteByCourseId(courseId);
+        TransactionUtil.afterCommit(() -> {
+            pendingDeltas.remove(courseId);
+            pendingDailyDeltas.keySet().removeIf(key -> key.courseId().equals(courseId));
+        });
+    }
+
+    /**
+     * The number of enrollments per day between two dates (inclusive), oldest first.
+     * Days without enrollments are left out.
+     */
+    public List<EnrollmentStatDTO> dailyCountsFor(Long courseId, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Long> counts = new TreeMap<>();
+        for (CourseDailyEnrollment day : dailyRepository.findDailySeries(courseId, from, to)) {
+            counts.put(day.getEnrollmentDay(), day.getEnrollmentCount());
+        }
+        pendingDailyDeltas.forEach((key, adder) -> {
+            long delta = adder.sum();
+            if (key.courseId().equals(courseId) && delta != 0
+                    && !key.day().isBefore(from) && !key.day().isAfter(to)) {
+                counts.merge(key.day(), delta, Long::sum);
+            }
+        });
+        List<EnrollmentStatDTO> series = new ArrayList<>(counts.size());
+        counts.forEach((day, count) -> series.add(new EnrollmentStatDTO(day, count)));
+        return series;
+    }
+
+    public int countFor(Long courseId) {
+        return countsFor(List.of(courseId)).getOrDefault(courseId, 0);
+    }
+
+    /**
+     * Looks up the enrollment counts of many courses with a single query.
+     * @return A map of course id to enrollment count; courses without enrollments map to 0.
+     */
+    public Map<Long, Integer> countsFor(Collection<Long> courseIds) {
+        if (courseIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Long courseId : courseIds) {
+            counts.put(courseId, (int) pendingDelta(courseId));
+        }
+        for (CourseEnrollmentCounter counter : counterRepository.findAllByCourseIdIn(courseIds)) {
+            counts.merge(counter.getCourseId(), (int) counter.getEnrollmentCount(), Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Adds the not-yet-flushed delta to a count that was read straight from the counter table
+     * (e.g. joined into a listing query), without another database round-trip.
+     */
+    public int withPending(Long courseId, long storedCount) {
+        return (int) (storedCount + pendingDelta(courseId));
+    }
+
+    /**
+     * Sum of all not-yet-flushed enrollments on this node.
+     */
+    public long pendingTotal() {
+        return pendingDeltas.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private long pendingDelta(Long courseId) {
+        LongAdder adder = pendingDeltas.get(courseId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * Writes all accumulated deltas to the database, one JDBC batch per table.
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    @PreDestroy
+    public synchronized void flush() {
+        flushCounters();
+        flushDaily();
+    }
+
+    private void flushCounters() {
+        if (pendingDeltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pendingDeltas.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                batch.add(new Object[]{delta, entry.getKey()});
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+        } catch (DataAccessException e) {
+            // Put the deltas back so the next run retries them.
+            for (Object[] row : batch) {
+                pendingDeltas.computeIfAbsent((Long) row[1], id -> new LongAdder()).add((Long) row[0]);
+            }
+            System.err.println("Could not flush enrollment counters: " + e.getMessage());
+        }
+    }
+
+    private void flushDaily() {
+        if (pendingDailyDeltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<CourseDay, LongAdder> entry : pendingDailyDeltas.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                batch.add(new Object[]{entry.getKey().day(), delta, entry.getKey().courseId()});
+            }
+        }
+        // Days before yesterday get no more enrollments (yesterday's may still be committing);
+        // drop their emptied adders so the map doesn't grow forever.
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        pendingDailyDeltas.entrySet().removeIf(entry ->
+                entry.getKey().day().isBefore(yesterday) && entry.getValue().sum() == 0);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_DAILY_SQL, batch);
+        } catch (DataAccessException e) {
+            for (Object[] row : batch) {
+                pendingDailyDeltas.computeIfAbsent(new CourseDay((Long) row[2], (LocalDate) row[0]), key -> new LongAdder())
+                        .add((Long) row[1]);
+            }
+            System.err.println("Could not flush daily enrollment counts: " + e.getMessage());
+        }
+    }
+}
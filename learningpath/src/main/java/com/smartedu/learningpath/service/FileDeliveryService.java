@@ -0,0 +1,316 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.storage.ObjectStorage;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Writes stored files to the response with HTTP range support, so PDF viewers can fetch
+ * just the pages they show and resume or seek without downloading the whole file again.
+ *
+ * Handles If-None-Match/If-Modified-Since (304), Range with If-Range (206, single range or
+ * multipart/byteranges, 416 when unsatisfiable), and sends the precompressed gzip variant of
+ * a file to clients that accept it (full responses only). Files in local storage are sent with
+ * FileChannel.transferTo, or handed to Tomcat's sendfile when the connector supports it; other
+ * storages are read with ranged reads, so only the requested bytes are fetched.
+ *
+ * Callers must run their authorization checks before calling serve: it is the first place
+ * that touches the file.
+ */
+@Service
+public class FileDeliveryService {
+
+    private final ObjectStorage storage;
+
+    public FileDeliveryService(ObjectStorage storage) {
+        this.storage = storage;
+    }
+
+    // Cached but revalidated on every use: the same resource id can get a new file.
+    private static final String CACHE_CONTROL = "private, no-cache";
+    // More ranges than this in one request is not a PDF viewer; send the whole file instead.
+    private static final int MAX_RANGES = 16;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private record ByteRange(long start, long end) { // end is inclusive
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * @param contentType The Content-Type of the full file.
+     * @param disposition "inline" or "attachment".
+     */
+    public void serve(HttpServletRequest request, HttpServletResponse response, FileStorageService.StoredContent content,
+                      String contentType, String disposition) throws IOException {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        // Ranges always refer to the identity bytes: PDF viewers ask for ranges, full downloads don't.
+        boolean gzip = content.gzipKey() != null && rangeHeader == null && acceptsGzip(request);
+        String key = gzip ? content.gzipKey() : content.key();
+        long length = gzip ? content.gzipSize() : content.size();
+        long lastModified = content.lastModified();
+        String tag = content.sha256() != null
+                ? content.sha256()
+                : Long.toHexString(content.size()) + "-" + Long.toHexString(lastModified);
+        String etag = "\"" + tag + (gzip ? "-gzip" : "") + "\""; // each encoding is its own representation
+
+        if (content.gzipKey() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition + "; filename=\"" + content.filename() + "\"");
+
+        List<ByteRange> ranges = null;
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+        }
+
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            if (gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            response.setContentLengthLong(length);
+            sendBody(request, response, key, new ByteRange(0, length - 1));
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            response.setContentLengthLong(range.length());
+            sendBody(request, response, key, range);
+        } else {
+            sendMultipart(request, response, key, contentType, ranges, length);
+        }
+    }
+
+    /**
+     * Whether Accept-Encoding allows gzip ("gzip" or "*" with a non-zero quality).
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String entry : acceptEncoding.toLowerCase().split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim();
+            if (coding.equals("gzip") || coding.equals("*")) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false; // If-None-Match takes precedence over If-Modified-Since
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * A Range only applies if the client's copy, named by If-Range, is still current.
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag); // strong comparison only
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * @return The requested ranges clipped to the file; an empty list if none of them is satisfiable,
+     * or null if the header is malformed or asks for too many ranges (the full file is sent then).
+     */
+    private static List<ByteRange> parseRanges(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        try {
+            for (String rawSpec : specs) {
+                String spec = rawSpec.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // Suffix range: the last N bytes.
+                    long suffix = Long.parseLong(last);
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < length) {
+                    ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return ranges;
+    }
+
+    private void sendMultipart(HttpServletRequest request, HttpServletResponse response, String key,
+                               String contentType, List<ByteRange> ranges, long length) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        Optional<Path> localFile = storage.localFile(key);
+        if (localFile.isPresent()) {
+            try (FileChannel file = FileChannel.open(localFile.get(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (int i = 0; i < ranges.size(); i++) {
+                    out.write(partHeaders.get(i));
+                    transfer(file, ranges.get(i), target);
+                }
+            }
+        } else {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                copyRange(key, ranges.get(i), out);
+            }
+        }
+        out.write(closing);
+        out.flush();
+    }
+
+    /**
+     * Sends one contiguous byte range. A local file goes through Tomcat's sendfile when available,
+     * so the bytes go from the page cache to the socket without passing through the JVM heap.
+     */
+    private void sendBody(HttpServletRequest request, HttpServletResponse response,
+                          String key, ByteRange range) throws IOException {
+        if ("HEAD".equals(request.getMethod()) || range.length() <= 0) {
+            return;
+        }
+        Optional<Path> localFile = storage.localFile(key);
+        if (localFile.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, localFile.get().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1); // exclusive
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        if (localFile.isPresent()) {
+            try (FileChannel file = FileChannel.open(localFile.get(), StandardOpenOption.READ)) {
+                transfer(file, range, Channels.newChannel(out));
+            }
+        } else {
+            copyRange(key, range, out);
+        }
+        out.flush();
+    }
+
+    private void copyRange(String key, ByteRange range, ServletOutputStream out) throws IOException {
+        try (InputStream in = storage.getRange(key, range.start(), range.length())) {
+            if (in.transferTo(out) != range.length()) {
+                throw new IOException("File ended before the requested range.");
+            }
+        }
+    }
+
+    private static void transfer(FileChannel file, ByteRange range, WritableByteChannel target) throws IOException {
+        long position = range.start();
+        long remaining = range.length();
+        while (remaining > 0) {
+            long sent = file.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                throw new IOException("File ended before the requested range.");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    private static String contentRange(ByteRange range, long length) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + length;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
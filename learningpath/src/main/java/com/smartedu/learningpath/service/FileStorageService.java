@@ -1,76 +1,249 @@
-
 package com.smartedu.learningpath.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartedu.learningpath.exception.StoredFileNotFoundException;
+import com.smartedu.learningpath.storage.ObjectInfo;
+import com.smartedu.learningpath.storage.ObjectStorage;
+import com.smartedu.learningpath.storage.StagingArea;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.stereotype.Service;
-import org.springframework.util.FileSystemUtils;
 import org.springframework.web.multipart.MultipartFile;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class FileStorageService {
 
+    // The root of the logical paths kept in the database; where the content lives is up to the ObjectStorage.
     private final Path root = Paths.get("uploads");
 
-    public FileStorageService() {
-        try {
-            if (!Files.exists(root)) {
-                Files.createDirectory(root);
+    /**
+     * An uploaded file that has been written to the staging area but not yet attached to a course.
+     * Its SHA-256 is computed while it is being written.
+     * @param gzipPath A gzip variant written next to it if the file compresses well, otherwise null.
+     */
+    public record StagedFile(Path path, String originalFilename, String sha256, long size, Path gzipPath) {}
+
+    /**
+     * A stored file ready to be served, with the metadata needed for response headers.
+     * @param key Where the content is in the ObjectStorage.
+     * @param filename The logical file name, e.g. "<uuid>_notes.pdf".
+     * @param sha256 The content hash; null for files from before the content store.
+     * @param gzipKey A gzip-encoded variant of the content, or null.
+     */
+    public record StoredContent(String key, String filename, String sha256, long size, long lastModified,
+                                String gzipKey, long gzipSize) {}
+
+    /**
+     * The staged files of one request. Closing it deletes whatever was not promoted,
+     * so unused or abandoned uploads never linger in the staging area.
+     */
+    public record StagedUploads(StagedFile thumbnail, List<StagedFile> resourceFiles) implements AutoCloseable {
+        @Override
+        public void close() {
+            if (thumbnail != null) {
+                deleteStaged(thumbnail);
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Could not initialize root upload folder!", e);
+            resourceFiles.forEach(FileStorageService::deleteStaged);
         }
     }
 
+    private final ContentStore contentStore;
+    private final ObjectStorage storage;
+    private final StorageReclaimer storageReclaimer;
+    private final StagingArea staging;
+
+    // Logical path -> content and metadata. What a logical path refers to never changes while it
+    // exists, so serving a file needs no stat calls (or hash lookups) once it is cached.
+    private final Cache<String, StoredContent> metadataCache;
+
+    public FileStorageService(ContentStore contentStore, ObjectStorage storage, StorageReclaimer storageReclaimer,
+                              StagingArea staging, MeterRegistry meterRegistry) {
+        this.contentStore = contentStore;
+        this.storage = storage;
+        this.storageReclaimer = storageReclaimer;
+        this.staging = staging;
+        this.metadataCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, metadataCache, "fileMetadata");
+        // Released paths (replaced thumbnails, reclaimed uploads, deleted courses) must not keep resolving.
+        contentStore.onPathsReleased(metadataCache::invalidateAll);
+    }
+
     /**
-     * Saves a file to a specific subfolder within a course's directory.
-     * @param file The file to save.
-     * @param courseId The ID of the course to create a folder for.
-     * @param subfolder The name of the subfolder (e.g., "thumbnail", "resources").
-     * @return The relative path to the saved file.
+     * Writes the thumbnail and resource files to the staging area concurrently, one virtual
+     * thread per file. Meant to run before the database transaction starts, so no pooled
+     * connection is held while files are copied.
+     * If any file fails, the ones already written are deleted and the error is rethrown.
+     * @param thumbnail The course thumbnail; may be null or empty.
+     * @param resourceFiles The resource files in request order; may be null.
      */
-    public String save(MultipartFile file, Long courseId, String subfolder) {
-        try {
-            // Create the main course directory (e.g., "uploads/1")
-            Path courseDirectory = root.resolve(String.valueOf(courseId));
-            if (!Files.exists(courseDirectory)) {
-                Files.createDirectory(courseDirectory);
+    public StagedUploads stage(MultipartFile thumbnail, List<MultipartFile> resourceFiles) {
+        boolean hasThumbnail = thumbnail != null && !thumbnail.isEmpty();
+        List<MultipartFile> files = new ArrayList<>();
+        if (hasThumbnail) {
+            files.add(thumbnail);
+        }
+        if (resourceFiles != null) {
+            files.addAll(resourceFiles);
+        }
+
+        List<Future<StagedFile>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> stageFile(file)));
+            }
+        } // close() waits for every copy to finish
+
+        List<StagedFile> staged = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Future<StagedFile> future : futures) {
+            try {
+                staged.add(future.get());
+            } catch (ExecutionException e) {
+                failure = e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new RuntimeException("Interrupted while storing files.");
             }
+        }
+        if (failure != null) {
+            staged.forEach(FileStorageService::deleteStaged);
+            throw failure;
+        }
 
+        return hasThumbnail
+                ? new StagedUploads(staged.get(0), staged.subList(1, staged.size()))
+                : new StagedUploads(null, staged);
+    }
 
-            Path subDirectory = courseDirectory.resolve(subfolder);
-            if (!Files.exists(subDirectory)) {
-                Files.createDirectory(subDirectory);
+    /**
+     * Attaches a staged file to a course and returns the path to store in the database, e.g.
+     * "uploads/1/resources/<uuid>_notes.pdf". The path is logical: the content goes into the
+     * content store, where identical files across all courses share one copy on disk.
+     * Call inside the transaction that records the path.
+     * @param courseId The ID of the course the file belongs to.
+     * @param subfolder The name of the subfolder (e.g., "thumbnail", "resources").
+     */
+    public String promote(StagedFile file, Long courseId, String subfolder) {
+        // Generate a unique filename to prevent conflicts
+        String filename = UUID.randomUUID().toString() + "_" + file.originalFilename();
+        String logicalPath = root.resolve(String.valueOf(courseId)).resolve(subfolder).resolve(filename)
+                .toString().replace("\\", "/");
+        contentStore.addReference(logicalPath, courseId, file.path(), file.sha256(), file.size(), file.gzipPath());
+        return logicalPath;
+    }
+
+    /**
+     * Stores content generated by the server, e.g. thumbnail renditions, and returns its path:
+     * "uploads/{courseId}/{subfolder}/{hash prefix}-{name}". The name changes whenever the content
+     * does, so responses for it can be cached forever. Call inside the transaction that records the path.
+     */
+    public String storeGenerated(byte[] content, Long courseId, String subfolder, String name) {
+        Path stagedPath = staging.resolve(UUID.randomUUID().toString());
+        try {
+            String sha256 = ContentStore.copyAndHash(new ByteArrayInputStream(content), stagedPath);
+            String logicalPath = root.resolve(String.valueOf(courseId)).resolve(subfolder)
+                    .resolve(sha256.substring(0, 16) + "-" + name)
+                    .toString().replace("\\", "/");
+            // The path is derived from the content, so an existing path already holds this exact content.
+            if (contentStore.hashOf(logicalPath).isEmpty()) {
+                contentStore.addReference(logicalPath, courseId, stagedPath, sha256, content.length);
             }
+            return logicalPath;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
+        } finally {
+            deleteQuietly(stagedPath); // already moved into the content store unless it was a duplicate
+        }
+    }
 
-            // Generate a unique filename to prevent conflicts
-            String filename = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+    /**
+     * Finds the file behind a path kept in the database.
+     * @throws StoredFileNotFoundException If the storage has no such file.
+     */
+    public StoredContent locate(String logicalPath) {
+        StoredContent cached = metadataCache.getIfPresent(logicalPath);
+        if (cached != null) {
+            return cached;
+        }
+        return locate(logicalPath, contentStore.hashOf(logicalPath).orElse(null));
+    }
 
-            // Resolve the final path and save the file
-            Path destinationPath = subDirectory.resolve(filename);
-            Files.copy(file.getInputStream(), destinationPath);
+    /**
+     * Finds a file whose content hash is already known (null for files from before the content
+     * store), without a database lookup.
+     */
+    public StoredContent locate(String logicalPath, String sha256) {
+        return metadataCache.get(logicalPath, path -> {
+            ObjectInfo file = contentStore.resolve(path, sha256)
+                    .orElseThrow(() -> new StoredFileNotFoundException(path));
+            ObjectInfo gzipFile = contentStore.gzipVariant(file.key()).orElse(null);
+            return new StoredContent(file.key(), Paths.get(path).getFileName().toString(), sha256,
+                    file.size(), file.lastModified(),
+                    gzipFile == null ? null : gzipFile.key(), gzipFile == null ? 0 : gzipFile.size());
+        });
+    }
 
-            // Return the relative path to be stored in the database
-            return destinationPath.toString().replace("\\", "/");
+    /**
+     * Opens a located file for reading.
+     */
+    public InputStream open(StoredContent content) throws IOException {
+        return storage.get(content.key());
+    }
 
+    private StagedFile stageFile(MultipartFile file) {
+        try {
+            Path stagedPath = staging.resolve(UUID.randomUUID().toString());
+            String sha256 = ContentStore.copyAndHash(file.getInputStream(), stagedPath);
+            Path gzipPath = ContentStore.precompress(stagedPath, file.getOriginalFilename());
+            return new StagedFile(stagedPath, file.getOriginalFilename(), sha256, Files.size(stagedPath), gzipPath);
         } catch (Exception e) {
             throw new RuntimeException("Could not store the file. Error: " + e.getMessage());
         }
     }
 
+    private static void deleteStaged(StagedFile file) {
+        deleteQuietly(file.path());
+        if (file.gzipPath() != null) {
+            deleteQuietly(file.gzipPath());
+        }
+    }
 
-    public void deleteCourseDirectory(Long courseId) {
+    private static void deleteQuietly(Path path) {
         try {
-            Path courseDirectory = root.resolve(String.valueOf(courseId));
-            if (Files.exists(courseDirectory)) {
-                // Use Spring's FileSystemUtils for a robust recursive delete.
-                // This is safer and simpler than manual recursion.
-                FileSystemUtils.deleteRecursively(courseDirectory);
-            }
+            Files.deleteIfExists(path);
         } catch (IOException e) {
-
-            System.err.println("Error deleting directory for course " + courseId + ": " + e.getMessage());
+            System.err.println("Could not delete file " + path + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Drops the course's references in the content store (content shared with other courses stays)
+     * and marks the course directory for removal. Nothing is deleted here: StorageReclaimer removes
+     * the directory once the deleting transaction has committed, and reclaims the unused blobs.
+     */
+    public void releaseCourseFiles(Long courseId) {
+        contentStore.releaseCourse(courseId);
+        String prefix = root.resolve(String.valueOf(courseId)).toString().replace("\\", "/") + "/";
+        // The content store evicts the course's stored paths on commit; this covers files from before it.
+        metadataCache.asMap().keySet().removeIf(path -> path.startsWith(prefix));
+        storageReclaimer.markForRemoval(prefix);
+    }
+}
@@ -0,0 +1,151 @@
+package com.smartedu.learningpath.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smartedu.learningpath.dto.CourseRevenueDTO;
+import com.smartedu.learningpath.dto.EnrollmentStatDTO;
+import com.smartedu.learningpath.dto.InstructorAnalyticsResponse;
+import com.smartedu.learningpath.user.User;
+import com.smartedu.learningpath.user.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Analytics across all the courses of an instructor, computed with a handful of GROUP BY
+ * queries over the enrollment rollups (course_enrollment_counters for the totals,
+ * course_daily_enrollments for the series) joined to the instructor's courses, so the cost
+ * depends on the number of courses and days, not on the number of enrollments.
+ *
+ * Results are cached for a short time per instructor and date range; the numbers can lag
+ * by the cache TTL plus the counter flush interval of EnrollmentCounterService.
+ */
+@Service
+public class InstructorAnalyticsService {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofSeconds(30);
+    private static final long MAX_ENTRIES = 10_000;
+    private static final int DEFAULT_DAYS = 90;
+    private static final int MAX_DAYS = 366;
+    private static final int TOP_COURSES = 10;
+
+    // Revenue uses the current price and discount; courses without a price count as free.
+    private static final String COURSE_REVENUE =
+            "COALESCE(k.enrollment_count, 0) * COALESCE(c.price, 0)";
+    private static final String DISCOUNTED_REVENUE =
+            COURSE_REVENUE + " * (100 - COALESCE(c.discount_percentage, 0)) / 100";
+
+    private static final String TOTALS_SQL =
+            "SELECT COUNT(*) AS course_count, " +
+            "COALESCE(SUM(k.enrollment_count), 0) AS enrollments, " +
+            "ROUND(COALESCE(SUM(" + COURSE_REVENUE + "), 0), 2) AS gross_revenue, " +
+            "ROUND(COALESCE(SUM(" + DISCOUNTED_REVENUE + "), 0), 2) AS discounted_revenue " +
+            "FROM courses c LEFT JOIN course_enrollment_counters k ON k.course_id = c.id " +
+            "WHERE c.instructor_id = ?";
+
+    private static final String TOP_COURSES_SQL =
+            "SELECT c.id, c.title, COALESCE(k.enrollment_count, 0) AS enrollments, " +
+            "ROUND(" + COURSE_REVENUE + ", 2) AS gross_revenue, " +
+            "ROUND(" + DISCOUNTED_REVENUE + ", 2) AS discounted_revenue " +
+            "FROM courses c LEFT JOIN course_enrollment_counters k ON k.course_id = c.id " +
+            "WHERE c.instructor_id = ? " +
+            "ORDER BY enrollments DESC, c.id DESC LIMIT ?";
+
+    private static final String DAILY_SQL =
+            "SELECT d.enrollment_day AS day, SUM(d.enrollment_count) AS enrollments " +
+            "FROM course_daily_enrollments d JOIN courses c ON c.id = d.course_id " +
+            "WHERE c.instructor_id = ? AND d.enrollment_day BETWEEN ? AND ? " +
+            "GROUP BY d.enrollment_day ORDER BY d.enrollment_day";
+
+    private static final String WEEKLY_SQL =
+            "SELECT CAST(date_trunc('week', d.enrollment_day) AS date) AS day, SUM(d.enrollment_count) AS enrollments " +
+            "FROM course_daily_enrollments d JOIN courses c ON c.id = d.course_id " +
+            "WHERE c.instructor_id = ? AND d.enrollment_day BETWEEN ? AND ? " +
+            "GROUP BY 1 ORDER BY 1";
+
+    private static final RowMapper<EnrollmentStatDTO> STAT_MAPPER = (rs, rowNum) ->
+            new EnrollmentStatDTO(rs.getObject("day", LocalDate.class), rs.getLong("enrollments"));
+
+    private static final RowMapper<CourseRevenueDTO> COURSE_MAPPER = (rs, rowNum) -> CourseRevenueDTO.builder()
+            .courseId(rs.getLong("id"))
+            .title(rs.getString("title"))
+            .enrollments(rs.getLong("enrollments"))
+            .grossRevenue(rs.getBigDecimal("gross_revenue"))
+            .discountedRevenue(rs.getBigDecimal("discounted_revenue"))
+            .build();
+
+    private record Key(Long instructorId, LocalDate from, LocalDate to) {}
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache<Key, InstructorAnalyticsResponse> cache;
+
+    public InstructorAnalyticsService(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(TIME_TO_LIVE)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "instructorAnalytics");
+    }
+
+    /**
+     * @param from First day of the enrollment series; defaults to 90 days before {@code to}.
+     * @param to Last day of the series; defaults to today. The range may span at most a year.
+     */
+    public InstructorAnalyticsResponse getAnalytics(String instructorEmail, LocalDate from, LocalDate to) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+        LocalDate seriesTo = to != null ? to : LocalDate.now();
+        LocalDate seriesFrom = from != null ? from : seriesTo.minusDays(DEFAULT_DAYS - 1);
+        if (seriesFrom.isAfter(seriesTo)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'.");
+        }
+        if (ChronoUnit.DAYS.between(seriesFrom, seriesTo) >= MAX_DAYS) {
+            throw new IllegalArgumentException("The date range may span at most " + MAX_DAYS + " days.");
+        }
+        return cache.get(new Key(instructor.getId(), seriesFrom, seriesTo), this::load);
+    }
+
+    private InstructorAnalyticsResponse load(Key key) {
+        // One connection and one snapshot for all four queries.
+        return readOnlyTransaction.execute(status -> {
+            InstructorAnalyticsResponse.InstructorAnalyticsResponseBuilder response = jdbcTemplate.queryForObject(
+                    TOTALS_SQL,
+                    (rs, rowNum) -> InstructorAnalyticsResponse.builder()
+                            .courseCount(rs.getInt("course_count"))
+                            .totalEnrollments(rs.getLong("enrollments"))
+                            .grossRevenue(rs.getBigDecimal("gross_revenue"))
+                            .discountedRevenue(rs.getBigDecimal("discounted_revenue")),
+                    key.instructorId());
+            List<CourseRevenueDTO> topCourses = jdbcTemplate.query(TOP_COURSES_SQL, COURSE_MAPPER,
+                    key.instructorId(), TOP_COURSES);
+            List<EnrollmentStatDTO> daily = jdbcTemplate.query(DAILY_SQL, STAT_MAPPER,
+                    key.instructorId(), key.from(), key.to());
+            List<EnrollmentStatDTO> weekly = jdbcTemplate.query(WEEKLY_SQL, STAT_MAPPER,
+                    key.instructorId(), key.from(), key.to());
+            return response
+                    .from(key.from())
+                    .to(key.to())
+                    .dailyEnrollments(daily)
+                    .weeklyEnrollments(weekly)
+                    .topCourses(topCourses)
+                    .build();
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.smartedu.learningpath.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a keyset-paginated listing, handed to clients as an opaque token.
+ * Catalog listings are ordered by (createdAt DESC, id DESC), search results by (rank DESC, id DESC),
+ * so a cursor carries exactly one of createdAt or rank plus the id as a tie-breaker.
+ */
+public record PageCursor(LocalDateTime createdAt, Float rank, Long id) {
+
+    private static final String SEPARATOR = "~";
+
+    public static PageCursor ofCreatedAt(LocalDateTime createdAt, Long id) {
+        return new PageCursor(createdAt, null, id);
+    }
+
+    public static PageCursor ofRank(float rank, Long id) {
+        return new PageCursor(null, rank, id);
+    }
+
+    public String encode() {
+        // The rank is stored as its raw bits so it round-trips exactly to the value PostgreSQL returned.
+        String key = createdAt != null
+                ? "c" + SEPARATOR + createdAt
+                : "r" + SEPARATOR + Integer.toHexString(Float.floatToIntBits(rank));
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The decoded cursor, or null when the token is blank (i.e. the first page was requested).
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed cursor.");
+            }
+            Long id = Long.valueOf(parts[2]);
+            return switch (parts[0]) {
+                case "c" -> ofCreatedAt(LocalDateTime.parse(parts[1]), id);
+                case "r" -> ofRank(Float.intBitsToFloat(Integer.parseUnsignedInt(parts[1], 16)), id);
+                default -> throw new IllegalArgumentException("Malformed cursor.");
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid pagination cursor: " + token, e);
+        }
+    }
+}
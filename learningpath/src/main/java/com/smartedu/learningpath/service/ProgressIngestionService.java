@@ -0,0 +1,237 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.dto.ProgressHeartbeatRequest;
+import com.smartedu.learningpath.user.User;
+import com.smartedu.learningpath.user.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind ingestion of learning progress heartbeats into {@code student_progress}.
+ *
+ * Heartbeats are merged in memory per (student, resource): time spent is summed and completion
+ * is sticky (and counted once into the student's course completion rollup), so a learner
+ * sending one every few seconds costs one map update, not one row. The merged deltas are
+ * upserted in JDBC batches every couple of seconds, or as soon as enough entries have piled
+ * up. When the buffer is full (the database is slow or down), new entries are refused and the
+ * caller should retry later; heartbeats for entries already buffered are still merged, since
+ * they don't take more memory.
+ *
+ * Buffered progress is lost if the node dies before a flush (a graceful shutdown flushes).
+ */
+@Service
+public class ProgressIngestionService {
+
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    private static final int FLUSH_THRESHOLD = 10_000;
+    private static final int MAX_PENDING = 100_000;
+    private static final int BATCH_SIZE = 500;
+    // Heartbeats come every few seconds; anything above this is a client bug or abuse.
+    private static final long MAX_SECONDS_PER_HEARTBEAT = 300;
+
+    // Skips resources (and students) deleted since the heartbeat instead of failing the whole
+    // batch on a foreign key, over and over.
+    private static final String UPSERT_SQL =
+            "INSERT INTO student_progress (student_id, resource_id, time_spent_seconds, is_completed) " +
+            "SELECT u.id, r.id, ?, FALSE FROM users u JOIN resources r ON r.id = ? WHERE u.id = ? " +
+            "ON CONFLICT (student_id, resource_id) DO UPDATE SET " +
+            "time_spent_seconds = COALESCE(student_progress.time_spent_seconds, 0) + EXCLUDED.time_spent_seconds";
+
+    // Marks the (just upserted) row completed and, only if it wasn't already, adds the resource
+    // to the student's completion rollup for its course (see CourseCompletionService).
+    private static final String COMPLETE_SQL =
+            "WITH completed AS (" +
+            "UPDATE student_progress SET is_completed = TRUE, completion_date = ? " +
+            "WHERE student_id = ? AND resource_id = ? AND NOT is_completed " +
+            "RETURNING student_id, resource_id) " +
+            "INSERT INTO student_course_progress (student_id, course_id, completed_resources, completed_minutes) " +
+            "SELECT d.student_id, m.course_id, 1, COALESCE(r.estimated_time_to_complete_minutes, 0) " +
+            "FROM completed d JOIN resources r ON r.id = d.resource_id JOIN modules m ON m.id = r.module_id " +
+            "ON CONFLICT (student_id, course_id) DO UPDATE SET " +
+            "completed_resources = student_course_progress.completed_resources + EXCLUDED.completed_resources, " +
+            "completed_minutes = student_course_progress.completed_minutes + EXCLUDED.completed_minutes";
+
+    private record ProgressKey(long studentId, long resourceId) {}
+
+    /**
+     * Merged heartbeats of one (student, resource). Only mutated inside the map's compute,
+     * so once removed from the map it no longer changes.
+     */
+    private static final class PendingProgress {
+        long secondsSpent;
+        LocalDateTime completedAt;
+
+        void merge(long seconds, LocalDateTime completion) {
+            secondsSpent += seconds;
+            if (completedAt == null) {
+                completedAt = completion;
+            }
+        }
+    }
+
+    private final UserRepository userRepository;
+    private final EnrolledCourseIndex enrolledCourseIndex;
+    private final CourseDetailCache courseDetailCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<ProgressKey, PendingProgress> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("progress-flush").daemon().factory());
+    private final Counter acceptedHeartbeats;
+    private final Counter rejectedHeartbeats;
+
+    public ProgressIngestionService(UserRepository userRepository, EnrolledCourseIndex enrolledCourseIndex,
+                                    CourseDetailCache courseDetailCache, JdbcTemplate jdbcTemplate,
+                                    TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.enrolledCourseIndex = enrolledCourseIndex;
+        this.courseDetailCache = courseDetailCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.acceptedHeartbeats = Counter.builder("progress.heartbeats").tag("result", "accepted").register(meterRegistry);
+        this.rejectedHeartbeats = Counter.builder("progress.heartbeats").tag("result", "rejected").register(meterRegistry);
+        Gauge.builder("progress.pending", pending, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    /**
+     * Buffers a heartbeat of a student enrolled in the resource's course.
+     * @return false if the buffer is full and the heartbeat was not taken; retry later.
+     */
+    public boolean recordHeartbeat(ProgressHeartbeatRequest heartbeat, String studentEmail) {
+        if (heartbeat.courseId() == null || heartbeat.resourceId() == null) {
+            throw new IllegalArgumentException("courseId and resourceId are required.");
+        }
+        if (heartbeat.secondsSpent() < 0 || heartbeat.secondsSpent() > MAX_SECONDS_PER_HEARTBEAT) {
+            throw new IllegalArgumentException("secondsSpent must be between 0 and " + MAX_SECONDS_PER_HEARTBEAT + ".");
+        }
+        User student = userRepository.findByEmail(studentEmail)
+                .orElseThrow(() -> new RuntimeException("Student not found"));
+        // Both checks are answered from memory (the enrollment index and the course tree cache).
+        if (!enrolledCourseIndex.forStudent(student.getId()).contains(heartbeat.courseId())) {
+            throw new AccessDeniedException("You are not enrolled in this course.");
+        }
+        if (!courseContains(heartbeat.courseId(), heartbeat.resourceId())) {
+            throw new RuntimeException("Resource not found");
+        }
+
+        ProgressKey key = new ProgressKey(student.getId(), heartbeat.resourceId());
+        LocalDateTime completion = heartbeat.completed() ? LocalDateTime.now() : null;
+        // The size check is racy by a few entries per concurrent caller, which is fine for a memory bound.
+        if (pending.size() >= MAX_PENDING && !pending.containsKey(key)) {
+            rejectedHeartbeats.increment();
+            requestFlush();
+            return false;
+        }
+        pending.compute(key, (k, progress) -> {
+            PendingProgress merged = progress != null ? progress : new PendingProgress();
+            merged.merge(heartbeat.secondsSpent(), completion);
+            return merged;
+        });
+        acceptedHeartbeats.increment();
+        if (pending.size() >= FLUSH_THRESHOLD) {
+            requestFlush();
+        }
+        return true;
+    }
+
+    /**
+     * Upserts everything buffered so far, in batches of {@value #BATCH_SIZE}. Stops at the first
+     * batch that fails: while the database is down, every further batch would only wait out the
+     * connection timeout too. The rest stays buffered for the next run.
+     */
+    @Scheduled(fixedDelay = FLUSH_INTERVAL_MS)
+    public synchronized void flush() {
+        flushRequested.set(false);
+        Map<ProgressKey, PendingProgress> batch = new HashMap<>();
+        for (ProgressKey key : pending.keySet()) {
+            PendingProgress progress = pending.remove(key);
+            if (progress == null) {
+                continue;
+            }
+            batch.put(key, progress);
+            if (batch.size() == BATCH_SIZE) {
+                if (!writeBatch(batch)) {
+                    return;
+                }
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * @return Whether the batch was written; if not, its entries are back in the buffer.
+     */
+    private boolean writeBatch(Map<ProgressKey, PendingProgress> batch) {
+        List<Object[]> upserts = new ArrayList<>(batch.size());
+        List<Object[]> completions = new ArrayList<>();
+        batch.forEach((key, progress) -> {
+            upserts.add(new Object[]{progress.secondsSpent, key.resourceId(), key.studentId()});
+            if (progress.completedAt != null) {
+                completions.add(new Object[]{Timestamp.valueOf(progress.completedAt), key.studentId(), key.resourceId()});
+            }
+        });
+        try {
+            // One transaction, so a retried batch can never count a completion twice.
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+                if (!completions.isEmpty()) {
+                    jdbcTemplate.batchUpdate(COMPLETE_SQL, completions);
+                }
+            });
+            return true;
+        } catch (DataAccessException e) {
+            // Merge the entries back so the next run retries them; they may have been updated meanwhile.
+            batch.forEach((key, progress) -> pending.compute(key, (k, current) -> {
+                PendingProgress merged = current != null ? current : new PendingProgress();
+                merged.merge(progress.secondsSpent, progress.completedAt);
+                return merged;
+            }));
+            System.err.println("Could not flush learning progress: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private boolean courseContains(Long courseId, Long resourceId) {
+        return courseDetailCache.get(courseId)
+                .map(tree -> tree.modules().stream()
+                        .flatMap(module -> module.getResources().stream())
+                        .anyMatch(resource -> resourceId.equals(resource.getId())))
+                .orElse(false);
+    }
+}
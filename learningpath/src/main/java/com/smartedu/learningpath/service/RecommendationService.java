@@ -0,0 +1,220 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.recommendation.CoEnrollmentMatrix;
+import com.smartedu.learningpath.recommendation.Neighbors;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.unimi.dsi.fastutil.longs.Long2FloatMaps;
+import it.unimi.dsi.fastutil.longs.Long2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * "Students also took" recommendations from co-enrollments (see CoEnrollmentMatrix).
+ *
+ * The matrix is built from the enrollments table at startup and rebuilt every few hours, on
+ * a fork/join pool. In between, committed enrollments are queued and applied in place every
+ * few seconds, and only the courses they touch get their neighbors recomputed. All of that runs
+ * on one worker thread that owns the matrix; requests read an immutable map of the top
+ * neighbors per course, which is swapped in after every change.
+ *
+ * Between rebuilds, a course's new enrollment count shifts its score in the lists of courses
+ * that no student shared with it since; the rebuild settles that.
+ */
+@Service
+public class RecommendationService {
+
+    public static final int NEIGHBORS_PER_COURSE = 20;
+
+    private static final long APPLY_INTERVAL_MS = 5000;
+    private static final long REBUILD_INTERVAL_MS = 6 * 60 * 60 * 1000L;
+    private static final int FETCH_SIZE = 10_000;
+
+    // The (student_id, course_id) unique constraint's index returns the rows in this order.
+    private static final String ENROLLMENTS_SQL =
+            "SELECT student_id, course_id FROM enrollments ORDER BY student_id, course_id";
+
+    private sealed interface Change permits Enrolled, CourseRemoved {}
+    private record Enrolled(long studentId, long courseId) implements Change {}
+    private record CourseRemoved(long courseId) implements Change {}
+
+    private record Scored(long courseId, float score) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("recommendations").daemon().factory());
+    private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+    private final Timer rebuildTimer;
+
+    // Only touched on the worker thread.
+    private CoEnrollmentMatrix matrix;
+    private volatile Long2ObjectOpenHashMap<Neighbors> neighbors = new Long2ObjectOpenHashMap<>();
+
+    public RecommendationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.rebuildTimer = Timer.builder("recommendations.rebuild").register(meterRegistry);
+        Gauge.builder("recommendations.courses", this, service -> service.neighbors.size()).register(meterRegistry);
+    }
+
+    /**
+     * Queues a new enrollment once the enclosing transaction commits.
+     */
+    public void recordEnrollment(Long studentId, Long courseId) {
+        TransactionUtil.afterCommit(() -> changes.add(new Enrolled(studentId, courseId)));
+    }
+
+    public void forgetCourse(Long courseId) {
+        TransactionUtil.afterCommit(() -> changes.add(new CourseRemoved(courseId)));
+    }
+
+    /**
+     * Courses most often taken together with the given one, best first.
+     */
+    public List<Long> similarCourses(Long courseId, int limit) {
+        Neighbors top = neighbors.getOrDefault(courseId.longValue(), Neighbors.NONE);
+        List<Long> ids = new ArrayList<>(Math.min(limit, top.size()));
+        for (int i = 0; i < top.size() && ids.size() < limit; i++) {
+            ids.add(top.courseIds()[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Courses for a student: the neighbors of all their courses, each scored by the sum of its
+     * similarities to them, best first. Courses the student already has are left out.
+     * @param enrolledCourseIds Sorted ids of the student's courses.
+     */
+    public List<Long> recommendedCourses(long[] enrolledCourseIds, int limit) {
+        Long2ObjectOpenHashMap<Neighbors> current = neighbors;
+        Long2FloatOpenHashMap scores = new Long2FloatOpenHashMap();
+        for (long courseId : enrolledCourseIds) {
+            Neighbors top = current.getOrDefault(courseId, Neighbors.NONE);
+            for (int i = 0; i < top.size(); i++) {
+                if (Arrays.binarySearch(enrolledCourseIds, top.courseIds()[i]) < 0) {
+                    scores.addTo(top.courseIds()[i], top.scores()[i]);
+                }
+            }
+        }
+        List<Scored> ranked = new ArrayList<>(scores.size());
+        Long2FloatMaps.fastForEach(scores, entry -> ranked.add(new Scored(entry.getLongKey(), entry.getFloatValue())));
+        ranked.sort(Comparator.comparingDouble(Scored::score).reversed().thenComparingLong(Scored::courseId));
+        return ranked.stream().limit(limit).map(Scored::courseId).toList();
+    }
+
+    /**
+     * Runs right after startup, then every few hours.
+     */
+    @Scheduled(fixedDelay = REBUILD_INTERVAL_MS)
+    public void scheduleRebuild() {
+        worker.execute(this::rebuild);
+    }
+
+    @Scheduled(fixedDelay = APPLY_INTERVAL_MS)
+    public void scheduleApply() {
+        worker.execute(this::applyChanges);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private void rebuild() {
+        try {
+            rebuildTimer.record(() -> {
+                matrix = CoEnrollmentMatrix.build(loadEnrollments(), pool);
+                neighbors = matrix.topNeighborsOfAll(NEIGHBORS_PER_COURSE, pool);
+            });
+            // Enrollments queued during the load may or may not be in it; adding them is idempotent.
+            applyChanges();
+        } catch (DataAccessException e) {
+            System.err.println("Could not build course recommendations: " + e.getMessage());
+        }
+    }
+
+    private void applyChanges() {
+        if (matrix == null || changes.isEmpty()) {
+            return; // before the first build, changes wait for it
+        }
+        LongOpenHashSet changed = new LongOpenHashSet();
+        LongOpenHashSet removed = new LongOpenHashSet();
+        Change change;
+        while ((change = changes.poll()) != null) {
+            switch (change) {
+                case Enrolled enrolled -> matrix.addEnrollment(enrolled.studentId(), enrolled.courseId(), changed);
+                case CourseRemoved courseRemoved -> {
+                    matrix.removeCourse(courseRemoved.courseId(), changed);
+                    removed.add(courseRemoved.courseId());
+                }
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        Long2ObjectOpenHashMap<Neighbors> updated = new Long2ObjectOpenHashMap<>(neighbors);
+        for (long courseId : removed) {
+            updated.remove(courseId);
+        }
+        for (long courseId : changed) {
+            if (!removed.contains(courseId)) {
+                updated.put(courseId, matrix.topNeighbors(courseId, NEIGHBORS_PER_COURSE));
+            }
+        }
+        neighbors = updated;
+    }
+
+    /**
+     * Streams the enrollments into per-student sorted course lists.
+     */
+    private Long2ObjectOpenHashMap<long[]> loadEnrollments() {
+        Long2ObjectOpenHashMap<long[]> coursesByStudent = new Long2ObjectOpenHashMap<>();
+        LongArrayList courses = new LongArrayList();
+        long[] currentStudent = {Long.MIN_VALUE};
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(ENROLLMENTS_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            long studentId = rs.getLong(1);
+            if (studentId != currentStudent[0]) {
+                if (!courses.isEmpty()) {
+                    coursesByStudent.put(currentStudent[0], courses.toLongArray());
+                    courses.clear();
+                }
+                currentStudent[0] = studentId;
+            }
+            courses.add(rs.getLong(2));
+        }));
+        if (!courses.isEmpty()) {
+            coursesByStudent.put(currentStudent[0], courses.toLongArray());
+        }
+        return coursesByStudent;
+    }
+}
@@ -1,79 +1,73 @@
 package com.smartedu.learningpath.service;
 
-import com.smartedu.learningpath.course.EnrollmentRepository;
+import com.smartedu.learningpath.course.ResourceFileAccess;
 import com.smartedu.learningpath.course.ResourceRepository;
-import com.smartedu.learningpath.user.User;
-import com.smartedu.learningpath.user.UserRepository;
+import com.smartedu.learningpath.dto.SignedFileUrlResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.UrlResource;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
-// No aliasing needed for this import
-import org.springframework.core.io.Resource;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 @Service
 @RequiredArgsConstructor
 public class ResourceService {
 
     private final ResourceRepository resourceRepository;
-    private final EnrollmentRepository enrollmentRepository;
-    private final UserRepository userRepository;
+    private final FileStorageService fileStorageService;
+    private final ContentStore contentStore;
+    private final SignedFileUrlService signedFileUrlService;
 
-    public Resource loadFileForViewing(Long resourceId, String studentEmail) {
-        User student = userRepository.findByEmail(studentEmail)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        // This refers to your own 'Resource' entity
-        com.smartedu.learningpath.course.Resource resourceEntity = resourceRepository.findById(resourceId)
-                .orElseThrow(() -> new RuntimeException("Resource not found"));
-        var course = resourceEntity.getModule().getCourse();
+    public FileStorageService.StoredContent loadFileForViewing(Long resourceId, String studentEmail) {
+        ResourceFileAccess access = checkFileAccess(resourceId, studentEmail, false);
+        // The stored path is resolved through the content store.
+        return fileStorageService.locate(access.getFilePath());
+    }
 
+    public FileStorageService.StoredContent loadFileAsResource(Long resourceId, String studentEmail) {
+        ResourceFileAccess access = checkFileAccess(resourceId, studentEmail, true);
+        return fileStorageService.locate(access.getFilePath());
+    }
 
-        boolean isEnrolled = enrollmentRepository.findByStudentAndCourse(student, course).isPresent();
-        boolean isFirstModule = resourceEntity.getModule().getModuleOrder() == 1;
+    /**
+     * Checks access once and returns a signed URL for the file that is valid for a limited time.
+     * Fetching it (and every range request a PDF viewer makes on it) needs no further database access.
+     * @param download Whether the URL is for downloading (attachment) rather than inline viewing.
+     */
+    public SignedFileUrlResponse issueFileUrl(Long resourceId, String email, boolean download) {
+        ResourceFileAccess access = checkFileAccess(resourceId, email, download);
+        String sha256 = contentStore.hashOf(access.getFilePath()).orElse(null);
+        SignedFileUrlService.FileGrant grant = signedFileUrlService.grant(
+                resourceId, access.getUserId(), download, sha256, access.getFilePath());
+        return SignedFileUrlResponse.builder()
+                .url("/api/files/" + signedFileUrlService.sign(grant))
+                .expiresAt(grant.expiresAt())
+                .build();
+    }
 
-        // A student can view a resource if they are enrolled OR if it's part of the first module (the free preview).
-        if (!isEnrolled && !isFirstModule) {
-            throw new AccessDeniedException("You must enroll in this course to view this resource.");
+    /**
+     * The course's instructor and enrolled students can view and download a resource file. Anyone
+     * else can only view files of the first module (the free preview).
+     */
+    private ResourceFileAccess checkFileAccess(Long resourceId, String email, boolean download) {
+        ResourceFileAccess access = resourceRepository.findFileAccess(resourceId, email);
+        if (access == null) {
+            throw new RuntimeException("Resource not found");
         }
-
-        try {
-            Path filePath = Paths.get(resourceEntity.getFilePath()).normalize();
-            // Here, we use the fully qualified name for Spring's Resource to avoid conflict.
-            org.springframework.core.io.Resource urlResource = new UrlResource(filePath.toUri());
-            if (urlResource.exists()) {
-                return urlResource;
-            } else {
-                throw new RuntimeException("File not found: " + resourceEntity.getFilePath());
-            }
-        } catch (MalformedURLException ex) {
-            throw new RuntimeException("File path error: " + resourceEntity.getFilePath(), ex);
+        if (access.getFilePath() == null) {
+            throw new RuntimeException("This resource has no file.");
         }
-    }
 
-    public Resource loadFileAsResource(Long resourceId, String studentEmail) {
-        User student = userRepository.findByEmail(studentEmail).orElseThrow();
-        // This refers to your own 'Resource' entity
-        com.smartedu.learningpath.course.Resource resource = resourceRepository.findById(resourceId).orElseThrow();
-        var course = resource.getModule().getCourse();
-
-        // Security Check: Student must be enrolled in the course this resource belongs to.
-        enrollmentRepository.findByStudentAndCourse(student, course)
-                .orElseThrow(() -> new AccessDeniedException("You are not enrolled in the course to download this resource."));
-
-        try {
-            Path filePath = Paths.get(resource.getFilePath()).normalize();
-            // Here, we use the fully qualified name for Spring's Resource.
-            org.springframework.core.io.Resource urlResource = new UrlResource(filePath.toUri());
-            if (urlResource.exists()) {
-                return urlResource;
-            } else {
-                throw new RuntimeException("File not found " + resource.getFilePath());
-            }
-        } catch (MalformedURLException ex) {
-            throw new RuntimeException("File path error", ex);
+        boolean isInstructor = access.getUserId().equals(access.getInstructorId());
+        boolean isEnrolled = Boolean.TRUE.equals(access.getEnrolled());
+        boolean isFirstModule = access.getModuleOrder() != null && access.getModuleOrder() == 1;
+        if (isInstructor || isEnrolled) {
+            return access;
+        }
+        if (download) {
+            throw new AccessDeniedException("You are not enrolled in the course to download this resource.");
+        }
+        if (!isFirstModule) {
+            throw new AccessDeniedException("You must enroll in this course to view this resource.");
         }
+        return access;
     }
-}
\ No newline at end of file
+}
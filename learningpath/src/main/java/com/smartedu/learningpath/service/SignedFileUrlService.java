@@ -0,0 +1,113 @@
+package com.smartedu.learningpath.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies the tokens of signed file URLs (/api/files/{token}).
+ *
+ * A token carries the resource id, the user it was issued to, its expiry, the disposition and
+ * where the content is stored, signed with HMAC-SHA256. Verifying one is pure computation,
+ * so serving a signed URL needs no database access at all.
+ */
+@Service
+public class SignedFileUrlService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(30);
+    // Expiries are rounded up to this step, so repeated requests for the same file get the same
+    // URL for a while and the browser can reuse its cached copy.
+    private static final long EXPIRY_STEP_SECONDS = 5 * 60;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * What a verified token grants access to.
+     * @param sha256 The content hash; null for files from before the content store.
+     * @param logicalPath The path stored on the resource.
+     */
+    public record FileGrant(Long resourceId, Long userId, Instant expiresAt, boolean attachment,
+                            String sha256, String logicalPath) {}
+
+    // HMAC-SHA256 keys shorter than the hash add no strength and are easy to guess.
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private final SecretKeySpec key;
+
+    /**
+     * @param secret The signing key, shared by every node: a URL issued by one node is served
+     *               by any other, and stays valid across restarts until it expires.
+     */
+    public SignedFileUrlService(@Value("${learningpath.file-urls.secret:}") String secret) {
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("learningpath.file-urls.secret must be set to at least "
+                    + MIN_SECRET_BYTES + " bytes, the same on every node.");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    public FileGrant grant(Long resourceId, Long userId, boolean attachment, String sha256, String logicalPath) {
+        long expiry = Instant.now().plus(TIME_TO_LIVE).getEpochSecond();
+        expiry = (expiry + EXPIRY_STEP_SECONDS - 1) / EXPIRY_STEP_SECONDS * EXPIRY_STEP_SECONDS;
+        return new FileGrant(resourceId, userId, Instant.ofEpochSecond(expiry), attachment, sha256, logicalPath);
+    }
+
+    public String sign(FileGrant grant) {
+        // The logical path goes last: it is the only field that may contain the separator.
+        String payload = grant.resourceId() + "|" + grant.userId() + "|" + grant.expiresAt().getEpochSecond() + "|"
+                + (grant.attachment() ? "a" : "i") + "|" + (grant.sha256() == null ? "" : grant.sha256()) + "|"
+                + grant.logicalPath();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(mac(payloadBytes));
+    }
+
+    /**
+     * @return The grant of a token with a valid signature that has not expired; empty otherwise.
+     */
+    public Optional<FileGrant> verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+        try {
+            byte[] payloadBytes = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, mac(payloadBytes))) {
+                return Optional.empty();
+            }
+
+            String[] fields = new String(payloadBytes, StandardCharsets.UTF_8).split("\\|", 6);
+            Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[2]));
+            if (expiresAt.isBefore(Instant.now())) {
+                return Optional.empty();
+            }
+            return Optional.of(new FileGrant(Long.valueOf(fields[0]), Long.valueOf(fields[1]), expiresAt,
+                    fields[3].equals("a"), fields[4].isEmpty() ? null : fields[4], fields[5]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            return Optional.empty(); // malformed token
+        }
+    }
+
+    private byte[] mac(byte[] payload) {
+        try {
+            // Mac instances are not thread-safe, and creating one is cheap next to serving a file.
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
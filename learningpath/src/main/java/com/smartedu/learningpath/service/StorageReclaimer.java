@@ -0,0 +1,417 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.storage.ObjectInfo;
+import com.smartedu.learningpath.storage.ObjectStorage;
+import com.smartedu.learningpath.storage.StagingArea;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Frees disk space in the background, so deleting or updating a course never waits for file I/O.
+ *
+ * Each sweep:
+ * 1. removes the directories marked for removal (e.g. those of deleted courses);
+ * 2. releases content-store paths that no course, resource or upload refers to any more
+ *    (replaced thumbnails and PDFs, outdated renditions);
+ * 3. deletes blobs whose reference count dropped to zero, and blob files with no row at all;
+ * 4. deletes files in the course directories that the database doesn't refer to (files from
+ *    before the content store), and staging files left behind by failed requests.
+ *
+ * Everything except the staging area (scratch space on this node's disk) goes through the ObjectStorage.
+ *
+ * Deletions are paced to a fixed rate so a large sweep doesn't starve the disk, and every
+ * sweep reports what it reclaimed (log and the storage.reclaimed.* metrics).
+ */
+@Service
+public class StorageReclaimer {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageReclaimer.class);
+
+    // Files younger than this may belong to a request that is still running.
+    private static final Duration GRACE_PERIOD = Duration.ofHours(1);
+    private static final Duration STAGING_MAX_AGE = Duration.ofDays(1);
+    private static final int MAX_DELETIONS_PER_SECOND = 50;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String UNREFERENCED_PATHS_SQL =
+            "SELECT f.path FROM stored_files f WHERE f.created_at < ? " +
+            "AND NOT EXISTS (SELECT 1 FROM courses c WHERE f.path IN " +
+            "(c.thumbnail_path, c.thumbnail_card_path, c.thumbnail_retina_path, c.thumbnail_detail_path)) " +
+            "AND NOT EXISTS (SELECT 1 FROM resources r WHERE r.file_path = f.path) " +
+            "AND NOT EXISTS (SELECT 1 FROM upload_sessions u WHERE u.file_path = f.path) " +
+            "LIMIT ?";
+
+    private static final String COURSE_PATHS_SQL =
+            "SELECT p FROM courses c CROSS JOIN LATERAL (VALUES (c.thumbnail_path), (c.thumbnail_card_path), " +
+            "(c.thumbnail_retina_path), (c.thumbnail_detail_path)) v(p) WHERE c.id = ? AND p IS NOT NULL " +
+            "UNION ALL SELECT r.file_path FROM resources r JOIN modules m ON m.id = r.module_id " +
+            "WHERE m.course_id = ? AND r.file_path IS NOT NULL " +
+            "UNION ALL SELECT u.file_path FROM upload_sessions u WHERE u.course_id = ?";
+
+    /**
+     * What one sweep (or one pass over the marked directories) reclaimed.
+     */
+    public record ReclaimReport(long filesDeleted, long bytesReclaimed, int directoriesRemoved,
+                                int pathsReleased, Duration duration) {}
+
+    private final ContentStore contentStore;
+    private final ObjectStorage storage;
+    private final JdbcTemplate jdbcTemplate;
+    private final StagingArea staging;
+    private final Counter reclaimedBytes;
+    private final Counter reclaimedFiles;
+
+    // Sweeps and the removal of marked directories (right after the deleting transaction commits)
+    // run on this thread. Pacing sleeps, so they must not run on the shared scheduler thread.
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("storage-reclaimer").daemon().factory());
+    private final AtomicBoolean sweepQueued = new AtomicBoolean();
+
+    private long nextDeletionAt = System.nanoTime();
+    private volatile ReclaimReport lastReport;
+
+    // Running totals of the pass in progress; guarded by the instance lock.
+    private long filesDeleted;
+    private long bytesDeleted;
+    private int directoriesRemoved;
+    private int pathsReleased;
+
+    public StorageReclaimer(ContentStore contentStore, ObjectStorage storage, StagingArea staging,
+                            JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.contentStore = contentStore;
+        this.storage = storage;
+        this.staging = staging;
+        this.jdbcTemplate = jdbcTemplate;
+        this.reclaimedBytes = Counter.builder("storage.reclaimed.bytes").baseUnit("bytes").register(meterRegistry);
+        this.reclaimedFiles = Counter.builder("storage.reclaimed.files").register(meterRegistry);
+    }
+
+    /**
+     * Marks a directory under uploads/ for removal, e.g. "uploads/12/". Call inside the transaction
+     * that makes it obsolete: the mark is rolled back with it, and the directory is removed soon after commit.
+     */
+    public void markForRemoval(String directory) {
+        jdbcTemplate.update("INSERT INTO pending_directory_removals (path, marked_at) VALUES (?, now()) " +
+                "ON CONFLICT (path) DO NOTHING", directory);
+        TransactionUtil.afterCommit(() -> executor.execute(this::removeMarkedDirectories));
+    }
+
+    /**
+     * The report of the last completed sweep, or null before the first one.
+     */
+    public ReclaimReport lastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Hands the hourly sweep to the reclaimer thread; a sweep that is still queued or running is not doubled.
+     */
+    @Scheduled(initialDelay = 5 * 60 * 1000, fixedDelay = 60 * 60 * 1000)
+    public void scheduleSweep() {
+        if (!sweepQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    sweep();
+                } finally {
+                    sweepQueued.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sweepQueued.set(false); // shutting down
+        }
+    }
+
+    /**
+     * Runs a full sweep on the calling thread; it may take minutes, since deletions are paced.
+     */
+    public synchronized ReclaimReport sweep() {
+        Instant start = Instant.now();
+        resetTotals();
+        try {
+            removeMarked();
+            releaseUnreferencedPaths();
+            reclaimUnreferencedBlobs();
+            removeOrphanBlobFiles();
+            sweepCourseDirectories();
+            sweepStaging();
+        } catch (RuntimeException e) {
+            log.warn("Storage sweep stopped early: {}", e.getMessage());
+        }
+        ReclaimReport report = finish(start);
+        lastReport = report;
+        log.info("Storage sweep reclaimed {} bytes in {} files ({} directories removed, {} paths released) in {} ms",
+                report.bytesReclaimed(), report.filesDeleted(), report.directoriesRemoved(), report.pathsReleased(),
+                report.duration().toMillis());
+        return report;
+    }
+
+    public synchronized ReclaimReport removeMarkedDirectories() {
+        Instant start = Instant.now();
+        resetTotals();
+        try {
+            removeMarked();
+        } catch (RuntimeException e) {
+            log.warn("Removing marked directories stopped early: {}", e.getMessage());
+        }
+        return finish(start);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void removeMarked() {
+        List<String> marked = jdbcTemplate.queryForList(
+                "SELECT path FROM pending_directory_removals ORDER BY marked_at", String.class);
+        for (String path : marked) {
+            String prefix;
+            try {
+                prefix = ContentStore.keyOf(path.endsWith("/") ? path : path + "/");
+            } catch (IllegalArgumentException e) {
+                prefix = "";
+            }
+            if (prefix.isEmpty() || prefix.equals("/")) {
+                log.warn("Ignoring removal mark outside the upload folder: {}", path);
+            } else {
+                deleteAll(prefix, Instant.MAX);
+            }
+            jdbcTemplate.update("DELETE FROM pending_directory_removals WHERE path = ?", path);
+        }
+    }
+
+    private void releaseUnreferencedPaths() {
+        Instant cutoff = Instant.now().minus(GRACE_PERIOD);
+        List<String> paths;
+        do {
+            paths = jdbcTemplate.queryForList(UNREFERENCED_PATHS_SQL, String.class,
+                    java.sql.Timestamp.from(cutoff), BATCH_SIZE);
+            // Nothing can start referring to a path nobody refers to, so releasing it is safe.
+            paths.forEach(contentStore::releasePath);
+            pathsReleased += paths.size();
+        } while (paths.size() == BATCH_SIZE);
+    }
+
+    private void reclaimUnreferencedBlobs() {
+        List<String> hashes;
+        Set<String> seen = new HashSet<>();
+        do {
+            hashes = contentStore.findUnreferencedBlobs(BATCH_SIZE);
+            for (String sha256 : hashes) {
+                pace();
+                countDeleted(contentStore.reclaimBlob(sha256));
+            }
+        } while (hashes.size() == BATCH_SIZE && seen.addAll(hashes)); // stop if nothing could be reclaimed
+    }
+
+    /**
+     * Blobs with no stored_blobs row, e.g. put by a transaction that rolled back.
+     */
+    private void removeOrphanBlobFiles() {
+        try {
+            for (String shard : contentStore.blobShards()) {
+                List<String> stored = contentStore.blobHashesIn(shard);
+                if (stored.isEmpty()) {
+                    continue;
+                }
+                String placeholders = String.join(",", stored.stream().map(sha -> "?").toList());
+                Set<String> known = new HashSet<>(jdbcTemplate.queryForList(
+                        "SELECT sha256 FROM stored_blobs WHERE sha256 IN (" + placeholders + ")",
+                        String.class, stored.toArray()));
+                for (String sha256 : stored) {
+                    if (!known.contains(sha256)) {
+                        pace();
+                        countDeleted(contentStore.removeOrphanBlob(sha256));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not scan the content store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Compares each course directory with the paths the database refers to: the directory of a
+     * course that no longer exists is removed as a whole, unreferenced files in the others are deleted.
+     */
+    private void sweepCourseDirectories() {
+        List<String> directories;
+        try {
+            directories = storage.listPrefixes("").stream()
+                    .filter(prefix -> prefix.matches("\\d+/"))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list the upload folder: {}", e.getMessage());
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(GRACE_PERIOD);
+        for (String directory : directories) {
+            long courseId = Long.parseLong(directory.substring(0, directory.length() - 1));
+            Integer courses = jdbcTemplate.queryForObject("SELECT count(*) FROM courses WHERE id = ?", Integer.class, courseId);
+            if (courses == null || courses == 0) {
+                deleteAll(directory, cutoff);
+                continue;
+            }
+
+            Set<String> referenced = new HashSet<>();
+            for (String path : jdbcTemplate.queryForList(COURSE_PATHS_SQL, String.class, courseId, courseId, courseId)) {
+                try {
+                    referenced.add(ContentStore.keyOf(path));
+                } catch (IllegalArgumentException e) {
+                    // not a stored path, nothing on storage can match it
+                }
+            }
+            for (ObjectInfo object : listObjects(directory)) {
+                if (!referenced.contains(object.key()) && object.lastModified() < cutoff.toEpochMilli()) {
+                    deleteObject(object);
+                }
+            }
+        }
+    }
+
+    private void sweepStaging() {
+        Instant cutoff = Instant.now().minus(STAGING_MAX_AGE);
+        for (Path file : listFiles(staging.directory())) {
+            if (isOlderThan(file, cutoff)) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Deletes every object under the prefix last modified before the cutoff, and counts the
+     * prefix as removed if that was all of them.
+     */
+    private void deleteAll(String prefix, Instant cutoff) {
+        boolean kept = false;
+        for (ObjectInfo object : listObjects(prefix)) {
+            if (cutoff == Instant.MAX || object.lastModified() < cutoff.toEpochMilli()) {
+                deleteObject(object);
+            } else {
+                kept = true;
+            }
+        }
+        if (!kept) {
+            directoriesRemoved++;
+        }
+    }
+
+    private List<ObjectInfo> listObjects(String prefix) {
+        try (Stream<ObjectInfo> objects = storage.list(prefix)) {
+            return objects.toList();
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not list {}: {}", prefix, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void deleteObject(ObjectInfo object) {
+        pace();
+        try {
+            if (storage.delete(object.key())) {
+                countDeleted(object.size());
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", object.key(), e.getMessage());
+        }
+    }
+
+    private void deleteFile(Path file) {
+        pace();
+        try {
+            long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                countDeleted(size);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static List<Path> listFiles(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return new ArrayList<>(paths.filter(Files::isRegularFile).toList());
+        } catch (IOException e) {
+            log.warn("Could not list {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static boolean isOlderThan(Path path, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Blocks until the next deletion fits within MAX_DELETIONS_PER_SECOND.
+     */
+    private void pace() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / MAX_DELETIONS_PER_SECOND;
+        long now = System.nanoTime();
+        long wait = nextDeletionAt - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reclaiming storage.");
+            }
+        }
+        nextDeletionAt = Math.max(now, nextDeletionAt) + interval;
+    }
+
+    private void countDeleted(long bytes) {
+        if (bytes > 0) {
+            filesDeleted++;
+            bytesDeleted += bytes;
+            reclaimedFiles.increment();
+            reclaimedBytes.increment(bytes);
+        }
+    }
+
+    private void resetTotals() {
+        filesDeleted = 0;
+        bytesDeleted = 0;
+        directoriesRemoved = 0;
+        pathsReleased = 0;
+    }
+
+    private ReclaimReport finish(Instant start) {
+        return new ReclaimReport(filesDeleted, bytesDeleted, directoriesRemoved, pathsReleased,
+                Duration.between(start, Instant.now()));
+    }
+}
@@ -0,0 +1,270 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.exception.StoredFileNotFoundException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates fixed-width JPEG renditions of course thumbnails, so a catalog card downloads a
+ * 320px image instead of the original upload.
+ *
+ * Renditions are made in the background after the thumbnail is committed, stored with
+ * content-hashed names under uploads/{courseId}/renditions and served with immutable cache
+ * headers (see MvcConfig). Until they exist the course's rendition paths are null and
+ * clients show the original. A periodic backfill covers older courses and jobs that were
+ * dropped or lost in a restart.
+ */
+@Service
+public class ThumbnailService {
+
+    public enum Rendition {
+        CARD(320), // catalog and dashboard cards
+        RETINA(640), // cards on 2x screens
+        DETAIL(1280); // course page header
+
+        private final int width;
+
+        Rendition(int width) {
+            this.width = width;
+        }
+
+        public int width() {
+            return width;
+        }
+    }
+
+    private static final float JPEG_QUALITY = 0.82f;
+    // Images larger than this after subsampled decoding are not processed; the original is used.
+    private static final long MAX_DECODED_PIXELS = 40_000_000L;
+    private static final int BACKFILL_BATCH = 20;
+
+    private static final String SAVE_RENDITIONS_SQL =
+            "UPDATE courses SET thumbnail_card_path = ?, thumbnail_retina_path = ?, thumbnail_detail_path = ?, " +
+            "updated_at = now() WHERE id = ? AND thumbnail_path = ?";
+
+    private final FileStorageService fileStorageService;
+    private final CourseDetailCache courseDetailCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Decoding and scaling is CPU and memory heavy, so only a couple run at a time.
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(200), Thread.ofPlatform().name("thumbnails-", 0).daemon().factory());
+    // Thumbnail paths queued or being processed, so the backfill doesn't queue them twice.
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailService(FileStorageService fileStorageService, CourseDetailCache courseDetailCache,
+                            JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.fileStorageService = fileStorageService;
+        this.courseDetailCache = courseDetailCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Queues rendition generation for a course's new thumbnail once the current transaction commits.
+     */
+    public void requestRenditions(Long courseId, String thumbnailPath) {
+        TransactionUtil.afterCommit(() -> submit(courseId, thumbnailPath));
+    }
+
+    /**
+     * Picks up courses whose thumbnail has no renditions yet.
+     */
+    @Scheduled(initialDelay = 60 * 1000, fixedDelay = 10 * 60 * 1000)
+    public void backfillMissingRenditions() {
+        jdbcTemplate.query("SELECT id, thumbnail_path FROM courses " +
+                        "WHERE thumbnail_path IS NOT NULL AND thumbnail_card_path IS NULL ORDER BY id LIMIT ?",
+                rs -> {
+                    submit(rs.getLong("id"), rs.getString("thumbnail_path"));
+                },
+                BACKFILL_BATCH);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void submit(Long courseId, String thumbnailPath) {
+        if (!pending.add(thumbnailPath)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(courseId, thumbnailPath);
+                } catch (RuntimeException e) {
+                    System.err.println("Could not create thumbnail renditions for course " + courseId + ": " + e.getMessage());
+                } finally {
+                    pending.remove(thumbnailPath);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(thumbnailPath); // queue full; the backfill will retry
+        }
+    }
+
+    private void generate(Long courseId, String thumbnailPath) {
+        // Storage errors (the store unreachable, a timeout) propagate to the caller: nothing is
+        // saved, so the backfill tries again. Only a missing or undecodable image is final.
+        BufferedImage source;
+        try (InputStream in = fileStorageService.open(fileStorageService.locate(thumbnailPath))) {
+            source = readForRenditions(in);
+        } catch (StoredFileNotFoundException | NoSuchFileException e) {
+            source = null;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read thumbnail " + thumbnailPath + ". Error: " + e.getMessage());
+        }
+
+        Map<Rendition, byte[]> encoded = new EnumMap<>(Rendition.class);
+        if (source != null) {
+            for (Rendition rendition : Rendition.values()) {
+                encoded.put(rendition, encodeJpeg(scaleToWidth(source, rendition.width())));
+            }
+        } else {
+            // Missing, not an image ImageIO can read, or too large to decode: point the renditions at
+            // the original so the backfill doesn't retry it forever.
+            System.err.println("Thumbnail " + thumbnailPath + " cannot be resized; using the original.");
+        }
+
+        Boolean saved = transactionTemplate.execute(status -> {
+            Map<Rendition, String> paths = new EnumMap<>(Rendition.class);
+            for (Rendition rendition : Rendition.values()) {
+                byte[] content = encoded.get(rendition);
+                paths.put(rendition, content == null ? thumbnailPath : fileStorageService.storeGenerated(
+                        content, courseId, "renditions", rendition.name().toLowerCase() + ".jpg"));
+            }
+            int updated = jdbcTemplate.update(SAVE_RENDITIONS_SQL, paths.get(Rendition.CARD),
+                    paths.get(Rendition.RETINA), paths.get(Rendition.DETAIL), courseId, thumbnailPath);
+            if (updated == 0) {
+                status.setRollbackOnly(); // the thumbnail was replaced or the course deleted meanwhile
+                return false;
+            }
+            return true;
+        });
+        if (Boolean.TRUE.equals(saved)) {
+            courseDetailCache.evict(courseId);
+        }
+    }
+
+    /**
+     * Decodes an image, subsampling large ones while reading: no rendition needs more than twice
+     * the widest rendition's pixels, and this keeps a 40-megapixel photo from filling the heap.
+     * @return The image, or null if the format is not supported, the data is corrupt or it is too large.
+     * @throws IOException If reading the stream itself fails.
+     */
+    private static BufferedImage readForRenditions(InputStream file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, width / (2 * Rendition.DETAIL.width()));
+                if ((long) (width / step) * (height / step) > MAX_DECODED_PIXELS) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } catch (IIOException e) {
+                // Readers wrap failures of the underlying stream too; only their own are about the data.
+                if (e.getCause() instanceof IOException cause && !(cause instanceof IIOException)) {
+                    throw cause;
+                }
+                return null;
+            } catch (RuntimeException e) {
+                return null; // some readers fail on corrupt data with unchecked exceptions
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales down in halving steps with bilinear filtering, which looks close to bicubic at a
+     * fraction of the cost. Never scales up. Transparent areas become white (JPEG has no alpha).
+     */
+    private static BufferedImage scaleToWidth(BufferedImage source, int targetWidth) {
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            int nextWidth = Math.max(targetWidth, width / 2);
+            if (width <= targetWidth) {
+                nextWidth = width; // only converts to RGB
+            }
+            int nextHeight = Math.max(1, (int) Math.round((double) height * nextWidth / width));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, nextWidth, nextHeight, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+            width = nextWidth;
+            height = nextHeight;
+        } while (width > targetWidth);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not encode the rendition. Error: " + e.getMessage());
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,296 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.TransactionUtil;
+import com.smartedu.learningpath.course.Course;
+import com.smartedu.learningpath.course.CourseRepository;
+import com.smartedu.learningpath.course.UploadSession;
+import com.smartedu.learningpath.course.UploadSessionRepository;
+import com.smartedu.learningpath.dto.UploadInitRequest;
+import com.smartedu.learningpath.dto.UploadStatusResponse;
+import com.smartedu.learningpath.storage.StagingArea;
+import com.smartedu.learningpath.exception.ConflictException;
+import com.smartedu.learningpath.user.User;
+import com.smartedu.learningpath.user.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resumable chunked uploads for large course resources:
+ * init -> append chunks (each at the current offset) -> complete -> reference the uploadId
+ * from the course JSON. Chunks are streamed from the request body straight into the upload's
+ * partial file in the local staging area, which moves into the content store (and so the
+ * ObjectStorage) under its path uploads/{courseId}/resources/... once the upload is complete.
+ * A partial upload lives on one node's disk, so its chunks must reach the same node.
+ * Neither memory use nor the multipart limits
+ * depend on the file size, and an interrupted upload resumes from the last stored byte.
+ *
+ * No database connection is held while a chunk is being written.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadService {
+
+    private static final long MAX_UPLOAD_SIZE = 2L * 1024 * 1024 * 1024; // 2 GB
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long ABANDONED_AFTER_HOURS = 24;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final CourseRepository courseRepository;
+    private final UserRepository userRepository;
+    private final ContentStore contentStore;
+    private final TransactionTemplate transactionTemplate;
+    private final StagingArea staging;
+
+    private final Path root = Paths.get("uploads");
+
+    // One writer per upload at a time; a second concurrent chunk is rejected, not queued.
+    private final ConcurrentHashMap<String, ReentrantLock> writeLocks = new ConcurrentHashMap<>();
+
+    public UploadStatusResponse init(UploadInitRequest request, String instructorEmail) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+        Course course = courseRepository.findById(request.courseId())
+                .orElseThrow(() -> new RuntimeException("Course not found"));
+        if (!course.getInstructor().getId().equals(instructor.getId())) {
+            throw new AccessDeniedException("You are not authorized to upload files to this course.");
+        }
+        if (request.size() <= 0 || request.size() > MAX_UPLOAD_SIZE) {
+            throw new IllegalArgumentException("Upload size must be between 1 byte and 2 GB.");
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        String filename = uploadId + "_" + Paths.get(String.valueOf(request.filename())).getFileName();
+        Path filePath = root.resolve(String.valueOf(course.getId())).resolve("resources").resolve(filename);
+        try {
+            Files.createDirectories(staging.directory());
+            Files.createFile(partialFile(uploadId));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create the upload file. Error: " + e.getMessage());
+        }
+
+        UploadSession session = uploadSessionRepository.save(UploadSession.builder()
+                .id(uploadId)
+                .courseId(course.getId())
+                .instructorId(instructor.getId())
+                .originalFilename(request.filename())
+                .filePath(filePath.toString().replace("\\", "/"))
+                .totalSize(request.size())
+                .build());
+        return toStatus(session);
+    }
+
+    public UploadStatusResponse status(String uploadId, String instructorEmail) {
+        return toStatus(findOwnSession(uploadId, instructorEmail));
+    }
+
+    /**
+     * Appends one chunk. The chunk must start exactly at the stored offset; anything the
+     * server wrote past that offset (a chunk that broke off mid-way) is overwritten.
+     */
+    public UploadStatusResponse appendChunk(String uploadId, long offset, InputStream body, String instructorEmail) {
+        ReentrantLock lock = writeLocks.computeIfAbsent(uploadId, id -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new ConflictException("Another chunk of this upload is still being written.");
+        }
+        try {
+            UploadSession session = findOwnSession(uploadId, instructorEmail);
+            if (session.isCompleted()) {
+                throw new ConflictException("This upload has already been completed.");
+            }
+            if (offset != session.getReceivedBytes()) {
+                throw new ConflictException("Chunk offset " + offset + " does not match the upload offset " + session.getReceivedBytes() + ".");
+            }
+
+            long written = writeAt(partialFile(uploadId), offset, body, session.getTotalSize() - offset);
+            session.setReceivedBytes(offset + written);
+            return toStatus(uploadSessionRepository.save(session));
+        } finally {
+            lock.unlock();
+            writeLocks.remove(uploadId, lock);
+        }
+    }
+
+    /**
+     * Finishes an upload and moves the file into the content store under its upload path,
+     * so identical content uploaded before is not kept twice.
+     */
+    public UploadStatusResponse complete(String uploadId, String instructorEmail) {
+        UploadSession session = findOwnSession(uploadId, instructorEmail);
+        if (session.isCompleted()) {
+            return toStatus(session);
+        }
+        if (session.getReceivedBytes() != session.getTotalSize()) {
+            throw new ConflictException("Upload is incomplete: " + session.getReceivedBytes() + " of " + session.getTotalSize() + " bytes received.");
+        }
+
+        // Hash and compress before the transaction: reading a large file shouldn't hold a connection.
+        Path file = partialFile(uploadId);
+        String sha256;
+        Path gzipFile;
+        try {
+            sha256 = ContentStore.sha256Of(file);
+            gzipFile = ContentStore.precompress(file, session.getOriginalFilename());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the uploaded file. Error: " + e.getMessage());
+        }
+
+        // The store consumes what it is given, so it gets a second name for the file; the
+        // partial file stays until the commit, and a rolled-back completion can be retried.
+        Path source = staging.resolve(uploadId + ".complete");
+        linkOrCopy(file, source);
+
+        return transactionTemplate.execute(status -> {
+            TransactionUtil.afterRollback(() -> deleteQuietly(source));
+            contentStore.addReference(session.getFilePath(), session.getCourseId(), source, sha256, session.getTotalSize(), gzipFile);
+            session.setCompleted(true);
+            UploadStatusResponse completed = toStatus(uploadSessionRepository.save(session));
+            TransactionUtil.afterCommit(() -> deleteQuietly(file));
+            return completed;
+        });
+    }
+
+    /**
+     * Hands a completed upload over to a course resource. Call inside the transaction that saves
+     * the resource: the session row is deleted with it, and restored if that transaction rolls back.
+     * @return The relative path to store as the resource's filePath.
+     */
+    public String claim(String uploadId, Long courseId, Long instructorId) {
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found: " + uploadId));
+        if (!session.getInstructorId().equals(instructorId) || !session.getCourseId().equals(courseId)) {
+            throw new AccessDeniedException("This upload does not belong to this course.");
+        }
+        if (!session.isCompleted()) {
+            throw new ConflictException("Upload " + uploadId + " has not been completed.");
+        }
+        uploadSessionRepository.delete(session);
+        return session.getFilePath();
+    }
+
+    /**
+     * Deletes uploads (and their partial files) that haven't received a chunk for a day.
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public void removeAbandonedUploads() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(ABANDONED_AFTER_HOURS);
+        for (UploadSession session : uploadSessionRepository.findAllByUpdatedAtBefore(cutoff)) {
+            if (session.isCompleted()) {
+                // Already in the content store, but no resource ever claimed it.
+                transactionTemplate.executeWithoutResult(status -> {
+                    contentStore.releasePath(session.getFilePath());
+                    uploadSessionRepository.delete(session);
+                });
+                continue;
+            }
+            try {
+                Files.deleteIfExists(partialFile(session.getId()));
+            } catch (IOException e) {
+                System.err.println("Could not delete abandoned upload " + session.getId() + ": " + e.getMessage());
+            }
+            uploadSessionRepository.delete(session);
+        }
+    }
+
+    private Path partialFile(String uploadId) {
+        return staging.resolve(uploadId + ".part");
+    }
+
+    /**
+     * A hard link costs nothing however large the upload is; file systems without them get a copy.
+     */
+    private static void linkOrCopy(Path file, Path target) {
+        try {
+            Files.deleteIfExists(target); // left over from a completion that failed mid-way
+            try {
+                Files.createLink(target, file);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(file, target);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read the uploaded file. Error: " + e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete upload file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams up to maxBytes from the body into the file at the given position and truncates
+     * whatever lies beyond the written range. If the client disconnects mid-chunk, the bytes
+     * received so far are kept, so the next attempt resumes from there.
+     * @return The number of bytes written.
+     */
+    private static long writeAt(Path file, long position, InputStream body, long maxBytes) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            channel.position(position);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long written = 0;
+            int read;
+            while ((read = readQuietly(body, buffer)) != -1) {
+                if (written + read > maxBytes) {
+                    throw new IllegalArgumentException("Chunk runs past the declared upload size.");
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                written += read;
+            }
+            channel.force(false);
+            return written;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not store the chunk. Error: " + e.getMessage());
+        }
+    }
+
+    // A broken request body ends the chunk early instead of failing it.
+    private static int readQuietly(InputStream body, byte[] buffer) {
+        try {
+            return body.read(buffer);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private UploadSession findOwnSession(String uploadId, String instructorEmail) {
+        User instructor = userRepository.findByEmail(instructorEmail)
+                .orElseThrow(() -> new RuntimeException("Instructor not found"));
+        UploadSession session = uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found: " + uploadId));
+        if (!session.getInstructorId().equals(instructor.getId())) {
+            throw new AccessDeniedException("You are not authorized to access this upload.");
+        }
+        return session;
+    }
+
+    private static UploadStatusResponse toStatus(UploadSession session) {
+        return UploadStatusResponse.builder()
+                .uploadId(session.getId())
+                .offset(session.getReceivedBytes())
+                .size(session.getTotalSize())
+                .completed(session.isCompleted())
+                .build();
+    }
+}
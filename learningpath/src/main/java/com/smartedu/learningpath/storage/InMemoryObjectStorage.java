@@ -0,0 +1,91 @@
+package com.smartedu.learningpath.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps objects on the heap. For tests and local experiments only: everything is lost on restart.
+ */
+public class InMemoryObjectStorage implements ObjectStorage {
+
+    private record StoredObject(byte[] content, long lastModified) {}
+
+    // Sorted, so listing a prefix is a range scan like in S3.
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        objects.put(key, new StoredObject(Files.readAllBytes(source), System.currentTimeMillis()));
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) {
+        StoredObject object = objects.get(key);
+        return object == null ? Optional.empty() : Optional.of(info(key, object));
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return new ByteArrayInputStream(find(key).content());
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        byte[] content = find(key).content();
+        if (offset < 0 || length < 0 || offset + length > content.length) {
+            throw new IllegalArgumentException("Range " + offset + "+" + length + " is outside " + key);
+        }
+        return new ByteArrayInputStream(content, (int) offset, (int) length);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return objects.remove(key) != null;
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) {
+        return tail(prefix).entrySet().stream()
+                .takeWhile(entry -> entry.getKey().startsWith(prefix))
+                .map(entry -> info(entry.getKey(), entry.getValue()));
+    }
+
+    @Override
+    public List<String> listPrefixes(String prefix) {
+        return tail(prefix).keySet().stream()
+                .takeWhile(key -> key.startsWith(prefix))
+                .map(key -> {
+                    int slash = key.indexOf('/', prefix.length());
+                    return slash < 0 ? null : key.substring(0, slash + 1);
+                })
+                .filter(p -> p != null)
+                .distinct()
+                .toList();
+    }
+
+    private Map<String, StoredObject> tail(String prefix) {
+        return objects.tailMap(prefix, true);
+    }
+
+    private StoredObject find(String key) throws NoSuchFileException {
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            throw new NoSuchFileException(key);
+        }
+        return object;
+    }
+
+    private static ObjectInfo info(String key, StoredObject object) {
+        return new ObjectInfo(key, object.content().length, object.lastModified());
+    }
+}
@@ -0,0 +1,165 @@
+package com.smartedu.learningpath.storage;
+
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Keeps objects as files under a root directory on this node's disk; the key is the relative path.
+ * Putting a file from the same file system is a rename, and the files are exposed through
+ * {@link #localFile} so they can be sent with sendfile.
+ */
+public class LocalObjectStorage implements ObjectStorage {
+
+    private final Path root;
+
+    public LocalObjectStorage(Path root) {
+        this.root = root.normalize();
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize root upload folder!", e);
+        }
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        Path target = resolve(key);
+        try {
+            move(source, target);
+        } catch (NoSuchFileException e) {
+            if (!Files.exists(source)) {
+                throw e;
+            }
+            // The directory was removed (emptied by a concurrent delete) after it was created.
+            move(source, target);
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        Path file = resolve(key);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? Optional.of(info(key, attributes)) : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ);
+        channel.position(offset);
+        return BoundedInputStream.builder()
+                .setInputStream(Channels.newInputStream(channel))
+                .setMaxCount(length)
+                .get();
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        Path file = resolve(key);
+        boolean deleted = Files.deleteIfExists(file);
+        // Remove the directories the file leaves empty, so deleted courses leave nothing behind.
+        for (Path dir = file.getParent(); dir != null && !dir.equals(root); dir = dir.getParent()) {
+            try {
+                Files.delete(dir);
+            } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) throws IOException {
+        int slash = prefix.lastIndexOf('/');
+        Path dir = slash < 0 ? root : resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(dir)) {
+            return Stream.empty();
+        }
+        return Files.walk(dir)
+                .filter(Files::isRegularFile)
+                .map(file -> {
+                    String key = root.relativize(file).toString().replace("\\", "/");
+                    if (!key.startsWith(prefix)) {
+                        return null;
+                    }
+                    try {
+                        return info(key, Files.readAttributes(file, BasicFileAttributes.class));
+                    } catch (NoSuchFileException e) {
+                        return null; // deleted while listing
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<String> listPrefixes(String prefix) throws IOException {
+        Path dir = prefix.isEmpty() ? root : resolve(prefix);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.filter(Files::isDirectory)
+                    .map(entry -> prefix + entry.getFileName() + "/")
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        Path file = resolve(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return file;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Different file system: copy next to the target first, so readers never see a partial file.
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(source);
+        }
+    }
+
+    private static ObjectInfo info(String key, BasicFileAttributes attributes) {
+        return new ObjectInfo(key, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+}
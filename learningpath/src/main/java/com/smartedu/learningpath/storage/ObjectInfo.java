@@ -0,0 +1,7 @@
+package com.smartedu.learningpath.storage;
+
+/**
+ * An object in an ObjectStorage.
+ * @param lastModified Epoch milliseconds.
+ */
+public record ObjectInfo(String key, long size, long lastModified) {}
@@ -0,0 +1,67 @@
+package com.smartedu.learningpath.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Where uploaded and generated files are kept: a flat namespace of keys such as
+ * ".cas/ab/ab12..." or "12/thumbnail/cover.png", with "/" as the only structure.
+ *
+ * Implementations: LocalObjectStorage (a directory on this node's disk), InMemoryObjectStorage
+ * (for tests) and S3ObjectStorage (any S3-compatible service, shared by all nodes). StorageConfig
+ * picks one with learningpath.storage.type. Local scratch files (staging, partial chunked
+ * uploads) stay on the node's disk and are put into the storage once they are complete.
+ */
+public interface ObjectStorage {
+
+    /**
+     * Stores the content of a local file under the key, replacing what was there. The storage may
+     * move the file instead of copying it, so the caller must not use it afterwards (but should
+     * delete it if it still exists).
+     */
+    void put(String key, Path source) throws IOException;
+
+    /**
+     * @return The size and modification time of the object, or empty if there is none.
+     */
+    Optional<ObjectInfo> stat(String key) throws IOException;
+
+    /**
+     * @throws NoSuchFileException If there is no object under the key.
+     */
+    InputStream get(String key) throws IOException;
+
+    /**
+     * Reads {@code length} bytes starting at {@code offset}; the range must lie within the object.
+     * @throws NoSuchFileException If there is no object under the key.
+     */
+    InputStream getRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * @return Whether there was an object to delete.
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Every object whose key starts with the prefix, at any depth. The stream must be closed.
+     */
+    Stream<ObjectInfo> list(String prefix) throws IOException;
+
+    /**
+     * The "directories" directly below a prefix, e.g. "12/" and ".cas/" for "". Each ends with "/".
+     */
+    List<String> listPrefixes(String prefix) throws IOException;
+
+    /**
+     * The object as a file on this node's disk, for zero-copy serving. Empty for storages that
+     * don't keep objects in local files.
+     */
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,212 @@
+package com.smartedu.learningpath.storage;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Keeps objects in a bucket of an S3-compatible service (AWS S3, MinIO, Ceph, R2...), so every
+ * node serves the same files. Point the client at a local stand-in such as MinIO with an endpoint
+ * override and path-style access (see StorageConfig).
+ *
+ * Files larger than one part are uploaded as a multipart upload with several parts in flight,
+ * each streamed from the file so no part is buffered on the heap. Range reads are ranged GETs.
+ */
+public class S3ObjectStorage implements ObjectStorage {
+
+    // S3 requires parts of at least 5 MB (except the last) and allows at most 10,000 per upload.
+    private static final long PART_SIZE = 16L * 1024 * 1024;
+    private static final int UPLOAD_PARALLELISM = 4;
+
+    private final S3Client s3;
+    private final String bucket;
+    // Shared by all uploads, so concurrent large uploads can't open unbounded connections.
+    private final ExecutorService partUploader = Executors.newFixedThreadPool(UPLOAD_PARALLELISM,
+            Thread.ofPlatform().name("s3-upload-", 0).daemon().factory());
+
+    public S3ObjectStorage(S3Client s3, String bucket) {
+        this.s3 = s3;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        long size = Files.size(source);
+        try {
+            if (size <= PART_SIZE) {
+                s3.putObject(request -> request.bucket(bucket).key(key), RequestBody.fromFile(source));
+            } else {
+                putMultipart(key, source, size);
+            }
+        } catch (SdkException e) {
+            throw new IOException("Could not upload " + key + ": " + e.getMessage(), e);
+        }
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public Optional<ObjectInfo> stat(String key) throws IOException {
+        try {
+            var head = s3.headObject(request -> request.bucket(bucket).key(key));
+            return Optional.of(new ObjectInfo(key, head.contentLength(), head.lastModified().toEpochMilli()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty(); // HEAD responses have no error body to name the error
+            }
+            throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return s3.getObject(request -> request.bucket(bucket).key(key));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return InputStream.nullInputStream();
+        }
+        String range = "bytes=" + offset + "-" + (offset + length - 1);
+        try {
+            return s3.getObject(request -> request.bucket(bucket).key(key).range(range));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        // DeleteObject succeeds whether or not the key exists, so ask first.
+        if (stat(key).isEmpty()) {
+            return false;
+        }
+        try {
+            s3.deleteObject(request -> request.bucket(bucket).key(key));
+            return true;
+        } catch (SdkException e) {
+            throw new IOException("Could not delete " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) throws IOException {
+        try {
+            return s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(prefix))
+                    .contents().stream()
+                    .map(object -> new ObjectInfo(object.key(), object.size(), object.lastModified().toEpochMilli()));
+        } catch (SdkException e) {
+            throw new IOException("Could not list " + prefix + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> listPrefixes(String prefix) throws IOException {
+        try {
+            return s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(prefix).delimiter("/"))
+                    .commonPrefixes().stream()
+                    .map(CommonPrefix::prefix)
+                    .toList();
+        } catch (SdkException e) {
+            throw new IOException("Could not list " + prefix + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void close() {
+        partUploader.shutdownNow();
+        s3.close();
+    }
+
+    private void putMultipart(String key, Path source, long size) throws IOException {
+        String uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += PART_SIZE, partNumber++) {
+                long partOffset = offset;
+                long partLength = Math.min(PART_SIZE, size - offset);
+                int number = partNumber;
+                futures.add(partUploader.submit(() -> {
+                    // The provider is asked for a fresh stream on every retry.
+                    RequestBody body = RequestBody.fromContentProvider(
+                            () -> openPart(source, partOffset, partLength), partLength, "application/octet-stream");
+                    String eTag = s3.uploadPart(request -> request.bucket(bucket).key(key)
+                            .uploadId(uploadId).partNumber(number).contentLength(partLength), body).eTag();
+                    return CompletedPart.builder().partNumber(number).eTag(eTag).build();
+                }));
+            }
+
+            List<CompletedPart> parts = new ArrayList<>();
+            for (Future<CompletedPart> future : futures) {
+                parts.add(future.get());
+            }
+            s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(parts)));
+        } catch (ExecutionException | InterruptedException | SdkException e) {
+            futures.forEach(future -> future.cancel(true));
+            abort(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("Could not upload " + key + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+        } catch (SdkException e) {
+            // The bucket's lifecycle rule for incomplete uploads cleans up eventually.
+            System.err.println("Could not abort upload of " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static InputStream openPart(Path source, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+            channel.position(offset);
+            return BoundedInputStream.builder()
+                    .setInputStream(Channels.newInputStream(channel))
+                    .setMaxCount(length)
+                    .get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.smartedu.learningpath.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Scratch space on this node's disk: request files and chunked uploads are written here before
+ * they go into the ObjectStorage. By default it lies in the local storage's root (see StorageConfig),
+ * so putting a staged file into local storage is a rename, not a copy.
+ */
+public record StagingArea(Path directory) {
+
+    public StagingArea {
+        directory = directory.normalize();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize the staging folder!", e);
+        }
+    }
+
+    public Path resolve(String name) {
+        return directory.resolve(name);
+    }
+}
@@ -0,0 +1,55 @@
+package com.smartedu.learningpath.course;
+
+import com.smartedu.learningpath.user.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the statements needed to insert a 50-module, 400-resource course with
+ * JDBC batching turned off for the session (one INSERT per row) and with the configured batching.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CourseBatchInsertTest {
+
+    private static final int MODULES = 50;
+    private static final int RESOURCES_PER_MODULE = 8;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void insertsLargeCourseTreeInBatches() {
+        User instructor = entityManager.persistAndFlush(CourseFixtures.instructor());
+        Session session = entityManager.getEntityManager().unwrap(Session.class);
+
+        session.setJdbcBatchSize(1);
+        long unbatched = countStatements(() -> persistCourse(instructor, "Unbatched"));
+
+        session.setJdbcBatchSize(null); // back to hibernate.jdbc.batch_size
+        long batched = countStatements(() -> persistCourse(instructor, "Batched"));
+
+        int rows = 1 + MODULES + MODULES * RESOURCES_PER_MODULE;
+        assertThat(unbatched).as("unbatched statements").isGreaterThanOrEqualTo(rows);
+        // 1 course insert, 1 module batch, 8 resource batches and about one sequence call per 50 ids.
+        assertThat(batched).as("batched statements, vs %d unbatched", unbatched).isLessThanOrEqualTo(25);
+    }
+
+    private long countStatements(Runnable work) {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        work.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void persistCourse(User instructor, String title) {
+        entityManager.persistAndFlush(CourseFixtures.course(instructor, title, MODULES, RESOURCES_PER_MODULE));
+    }
+}
@@ -0,0 +1,49 @@
+package com.smartedu.learningpath.course;
+
+import com.smartedu.learningpath.user.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CourseFetchPlanTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Test
+    void loadsLargeCourseTreeInBoundedNumberOfStatements() {
+        Long courseId = persistCourse(40, 5);
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Course course = courseRepository.findDetailById(courseId).orElseThrow();
+        String instructorName = course.getInstructor().getFullName();
+        int resourceCount = course.getModules().stream()
+                .mapToInt(module -> module.getResources().size())
+                .sum();
+
+        assertThat(instructorName).isEqualTo("Ada Instructor");
+        assertThat(course.getModules()).hasSize(40);
+        assertThat(resourceCount).isEqualTo(200);
+        // One statement for course + instructor + modules, one for every module's resources.
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private Long persistCourse(int moduleCount, int resourcesPerModule) {
+        User instructor = entityManager.persist(CourseFixtures.instructor());
+        return entityManager.persistAndFlush(
+                CourseFixtures.course(instructor, "Large course", moduleCount, resourcesPerModule)).getId();
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartedu.learningpath.course;
+
+import com.smartedu.learningpath.user.Role;
+import com.smartedu.learningpath.user.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unsaved entities for the course tests; persist them with the test's entity manager.
+ */
+final class CourseFixtures {
+
+    private CourseFixtures() {
+    }
+
+    static User instructor() {
+        return User.builder()
+                .fullName("Ada Instructor")
+                .email("ada@example.com")
+                .password("secret")
+                .role(Role.INSTRUCTOR)
+                .build();
+    }
+
+    /**
+     * A course with the given number of modules, each holding resourcesPerModule links.
+     */
+    static Course course(User instructor, String title, int moduleCount, int resourcesPerModule) {
+        Course course = Course.builder()
+                .title(title)
+                .description("A course with many modules")
+                .instructor(instructor)
+                .build();
+
+        List<Module> modules = new ArrayList<>();
+        for (int i = 1; i <= moduleCount; i++) {
+            Module module = Module.builder()
+                    .title("Module " + i)
+                    .moduleOrder(i)
+                    .course(course)
+                    .build();
+            List<Resource> resources = new ArrayList<>();
+            for (int j = 1; j <= resourcesPerModule; j++) {
+                resources.add(Resource.builder()
+                        .title("Resource " + i + "." + j)
+                        .resourceType(Resource.ResourceType.LINK)
+                        .url("https://example.com/" + i + "/" + j)
+                        .estimatedTimeToCompleteMinutes(10)
+                        .module(module)
+                        .build());
+            }
+            module.setResources(resources);
+            modules.add(module);
+        }
+        course.setModules(modules);
+        return course;
+    }
+}
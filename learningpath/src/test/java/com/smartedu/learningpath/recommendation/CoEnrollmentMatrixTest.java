@@ -0,0 +1,102 @@
+package com.smartedu.learningpath.recommendation;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class CoEnrollmentMatrixTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void ranksNeighborsByCosineSimilarity() {
+        Long2ObjectOpenHashMap<long[]> enrollments = new Long2ObjectOpenHashMap<>();
+        enrollments.put(1L, new long[]{10, 20, 30});
+        enrollments.put(2L, new long[]{10, 20});
+        enrollments.put(3L, new long[]{20, 30});
+        enrollments.put(4L, new long[]{40});
+
+        CoEnrollmentMatrix matrix = CoEnrollmentMatrix.build(enrollments, pool);
+
+        assertThat(matrix.coEnrollments(10, 20)).isEqualTo(2);
+        assertThat(matrix.coEnrollments(20, 10)).isEqualTo(2);
+        Neighbors neighbors = matrix.topNeighbors(10, 5);
+        assertThat(neighbors.courseIds()).containsExactly(20, 30);
+        assertThat(neighbors.scores()[0]).isCloseTo((float) (2 / Math.sqrt(2 * 3)), within(1e-6f));
+        assertThat(neighbors.scores()[1]).isCloseTo(0.5f, within(1e-6f));
+        assertThat(matrix.topNeighbors(40, 5).size()).isZero();
+        assertThat(matrix.topNeighbors(10, 1).courseIds()).containsExactly(20);
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFullBuild() {
+        Random random = new Random(7);
+        Long2ObjectOpenHashMap<long[]> enrollments = new Long2ObjectOpenHashMap<>();
+        for (long student = 0; student < 10_000; student++) {
+            LongOpenHashSet courses = new LongOpenHashSet();
+            int count = 1 + random.nextInt(8);
+            while (courses.size() < count) {
+                courses.add(random.nextInt(200));
+            }
+            long[] sorted = courses.toLongArray();
+            Arrays.sort(sorted);
+            enrollments.put(student, sorted);
+        }
+
+        // More students than one leaf task takes, so the partial counts get merged.
+        CoEnrollmentMatrix built = CoEnrollmentMatrix.build(enrollments, pool);
+        CoEnrollmentMatrix incremental = CoEnrollmentMatrix.build(new Long2ObjectOpenHashMap<>(), pool);
+        LongOpenHashSet changed = new LongOpenHashSet();
+        enrollments.forEach((student, courses) -> {
+            for (long course : courses) {
+                assertThat(incremental.addEnrollment(student, course, changed)).isTrue();
+            }
+        });
+
+        assertThat(incremental.courseCount()).isEqualTo(built.courseCount());
+        Long2ObjectOpenHashMap<Neighbors> expected = built.topNeighborsOfAll(10, pool);
+        Long2ObjectOpenHashMap<Neighbors> actual = incremental.topNeighborsOfAll(10, pool);
+        expected.forEach((course, neighbors) -> {
+            assertThat(actual.get(course.longValue()).courseIds()).containsExactly(neighbors.courseIds());
+            assertThat(actual.get(course.longValue()).scores()).containsExactly(neighbors.scores());
+        });
+    }
+
+    @Test
+    void countsAnEnrollmentOnceAndForgetsDeletedCourses() {
+        Long2ObjectOpenHashMap<long[]> enrollments = new Long2ObjectOpenHashMap<>();
+        enrollments.put(1L, new long[]{10, 20});
+        CoEnrollmentMatrix matrix = CoEnrollmentMatrix.build(enrollments, pool);
+        LongOpenHashSet changed = new LongOpenHashSet();
+
+        assertThat(matrix.addEnrollment(1, 20, changed)).isFalse();
+        assertThat(matrix.addEnrollment(1, 30, changed)).isTrue();
+        assertThat(changed).containsExactlyInAnyOrder(10L, 20L, 30L);
+        assertThat(matrix.coEnrollments(10, 20)).isEqualTo(1);
+
+        changed.clear();
+        matrix.removeCourse(20, changed);
+        assertThat(changed).containsExactlyInAnyOrder(10L, 30L);
+        assertThat(matrix.topNeighbors(10, 5).courseIds()).containsExactly(30);
+        assertThat(matrix.topNeighbors(20, 5).size()).isZero();
+    }
+}
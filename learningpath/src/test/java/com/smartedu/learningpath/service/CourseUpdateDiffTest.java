@@ -0,0 +1,173 @@
+package com.smartedu.learningpath.service;
+
+import com.smartedu.learningpath.course.Course;
+import com.smartedu.learningpath.course.CourseRepository;
+import com.smartedu.learningpath.course.Module;
+import com.smartedu.learningpath.course.Resource;
+import com.smartedu.learningpath.dto.CourseCreateRequest;
+import com.smartedu.learningpath.dto.CourseUpdateSummary;
+import com.smartedu.learningpath.dto.ModuleCreateRequest;
+import com.smartedu.learningpath.dto.ResourceCreateRequest;
+import com.smartedu.learningpath.user.Role;
+import com.smartedu.learningpath.user.User;
+import com.smartedu.learningpath.user.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The diff behind CourseService.updateCourse: what it changes in the loaded tree, what it
+ * reports, and when it evicts the cached detail and rebuilds the completion rollups.
+ */
+@ExtendWith(MockitoExtension.class)
+class CourseUpdateDiffTest {
+
+    private static final Long COURSE_ID = 1L;
+    private static final String EMAIL = "ada@example.com";
+
+    @Mock private CourseRepository courseRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private FileStorageService fileStorageService;
+    @Mock private CourseDetailCache courseDetailCache;
+    @Mock private CourseCompletionService courseCompletionService;
+    @Mock private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CourseService courseService;
+
+    private Course course;
+    private Module module;
+    private Resource intro;
+    private Resource slides;
+    private List<FileStorageService.StagedFile> uploadedFiles;
+
+    @BeforeEach
+    void loadCourse() {
+        User instructor = User.builder().id(7L).email(EMAIL).fullName("Ada Instructor").role(Role.INSTRUCTOR).build();
+        course = Course.builder()
+                .id(COURSE_ID)
+                .title("Course")
+                .description("Description")
+                .price(new BigDecimal("10.00"))
+                .instructor(instructor)
+                .modules(new ArrayList<>())
+                .build();
+        module = Module.builder().id(10L).title("Module 1").moduleOrder(1).course(course).resources(new ArrayList<>()).build();
+        intro = Resource.builder().id(100L).title("Intro").resourceType(Resource.ResourceType.LINK)
+                .url("https://example.com/intro").estimatedTimeToCompleteMinutes(5).resourceOrder(1).module(module).build();
+        slides = Resource.builder().id(101L).title("Slides").resourceType(Resource.ResourceType.PDF)
+                .estimatedTimeToCompleteMinutes(20).resourceOrder(2).module(module).build();
+        module.getResources().addAll(List.of(intro, slides));
+        course.getModules().add(module);
+        uploadedFiles = new ArrayList<>();
+
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.of(instructor));
+        when(courseRepository.findDetailById(COURSE_ID)).thenReturn(Optional.of(course));
+        when(fileStorageService.stage(any(), any()))
+                .thenAnswer(invocation -> new FileStorageService.StagedUploads(null, uploadedFiles));
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void unchangedRequestChangesNothing() {
+        CourseUpdateSummary changes = update(introRequest(), slidesRequest());
+
+        assertThat(changes.hasChanges()).isFalse();
+        verify(courseDetailCache, never()).evict(any());
+        verify(courseCompletionService, never()).rebalanceCourse(any());
+    }
+
+    @Test
+    void addsNewResources() {
+        CourseUpdateSummary changes = update(introRequest(), slidesRequest(),
+                new ResourceCreateRequest(null, "Quiz", "LINK", "https://example.com/quiz", 15, null));
+
+        assertThat(changes.getResourcesAdded()).isEqualTo(1);
+        assertThat(module.getResources()).extracting(Resource::getTitle).containsExactly("Intro", "Slides", "Quiz");
+        assertThat(module.getResources().get(2).getResourceOrder()).isEqualTo(3);
+        verify(courseCompletionService).rebalanceCourse(COURSE_ID);
+        verify(courseDetailCache).evict(COURSE_ID);
+    }
+
+    @Test
+    void updatesMatchedResourcesInPlace() {
+        CourseUpdateSummary changes = update(
+                new ResourceCreateRequest(100L, "Introduction", "LINK", "https://example.com/intro", 5, null),
+                slidesRequest());
+
+        assertThat(changes.getResourcesUpdated()).isEqualTo(1);
+        assertThat(changes.getResourcesAdded()).isZero();
+        assertThat(module.getResources()).containsExactly(intro, slides);
+        assertThat(intro.getTitle()).isEqualTo("Introduction");
+        verify(courseDetailCache).evict(COURSE_ID);
+    }
+
+    @Test
+    void reordersWithoutRebuildingRollups() {
+        CourseUpdateSummary changes = update(slidesRequest(), introRequest());
+
+        assertThat(changes.getResourcesReordered()).isEqualTo(2);
+        assertThat(changes.getResourcesUpdated()).isZero();
+        assertThat(slides.getResourceOrder()).isEqualTo(1);
+        assertThat(intro.getResourceOrder()).isEqualTo(2);
+        verify(courseDetailCache).evict(COURSE_ID);
+        verify(courseCompletionService, never()).rebalanceCourse(any());
+    }
+
+    @Test
+    void removesResourcesMissingFromTheRequest() {
+        CourseUpdateSummary changes = update(introRequest());
+
+        assertThat(changes.getResourcesRemoved()).isEqualTo(1);
+        assertThat(module.getResources()).containsExactly(intro);
+        verify(courseCompletionService).rebalanceCourse(COURSE_ID);
+        verify(courseDetailCache).evict(COURSE_ID);
+    }
+
+    @Test
+    void attachingAFileToAnExistingPdfCountsAsAnUpdate() {
+        FileStorageService.StagedFile file = new FileStorageService.StagedFile(
+                Path.of("staged-slides"), "slides.pdf", "0", 3, null);
+        uploadedFiles.add(file);
+        when(fileStorageService.promote(file, COURSE_ID, "resources")).thenReturn("uploads/1/resources/slides.pdf");
+
+        CourseUpdateSummary changes = update(introRequest(), slidesRequest());
+
+        assertThat(slides.getFilePath()).isEqualTo("uploads/1/resources/slides.pdf");
+        assertThat(changes.getResourcesUpdated()).isEqualTo(1);
+        assertThat(changes.hasChanges()).isTrue();
+        verify(courseDetailCache).evict(COURSE_ID);
+    }
+
+    private CourseUpdateSummary update(ResourceCreateRequest... resources) {
+        CourseCreateRequest request = new CourseCreateRequest(course.getTitle(), course.getDescription(),
+                course.getPrice(), null, List.of(new ModuleCreateRequest(10L, "Module 1", List.of(resources))));
+        return courseService.updateCourse(COURSE_ID, request, null, List.of(), EMAIL);
+    }
+
+    private static ResourceCreateRequest introRequest() {
+        return new ResourceCreateRequest(100L, "Intro", "LINK", "https://example.com/intro", 5, null);
+    }
+
+    private static ResourceCreateRequest slidesRequest() {
+        return new ResourceCreateRequest(101L, "Slides", "PDF", null, 20, null);
+    }
+}
@@ -0,0 +1,124 @@
+package com.smartedu.learningpath.storage;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The behavior every ObjectStorage must share. Runs against the local and in-memory storages,
+ * and against S3 when S3_TEST_ENDPOINT points at an S3-compatible stand-in, e.g. MinIO:
+ * docker run -p 9000:9000 minio/minio server /data, then create the bucket named by S3_TEST_BUCKET
+ * (default "learningpath-test") and set S3_TEST_ACCESS_KEY/S3_TEST_SECRET_KEY (default minioadmin).
+ */
+class ObjectStorageTest {
+
+    @TempDir
+    static Path temp;
+
+    static Stream<ObjectStorage> storages() {
+        List<ObjectStorage> storages = new ArrayList<>();
+        storages.add(new LocalObjectStorage(temp.resolve("local-" + UUID.randomUUID())));
+        storages.add(new InMemoryObjectStorage());
+        String endpoint = System.getenv("S3_TEST_ENDPOINT");
+        if (endpoint != null && !endpoint.isBlank()) {
+            S3Client client = S3Client.builder()
+                    .endpointOverride(URI.create(endpoint))
+                    .forcePathStyle(true)
+                    .region(Region.US_EAST_1)
+                    .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(
+                            env("S3_TEST_ACCESS_KEY", "minioadmin"), env("S3_TEST_SECRET_KEY", "minioadmin"))))
+                    .build();
+            storages.add(new S3ObjectStorage(client, env("S3_TEST_BUCKET", "learningpath-test")));
+        }
+        return storages.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void putsReadsAndDeletes(ObjectStorage storage) throws IOException {
+        String prefix = "test-" + UUID.randomUUID() + "/";
+        byte[] content = randomBytes(10_000);
+        storage.put(prefix + "a/one.bin", write(content));
+
+        assertThat(storage.stat(prefix + "a/one.bin")).hasValueSatisfying(info -> assertThat(info.size()).isEqualTo(10_000));
+        try (InputStream in = storage.get(prefix + "a/one.bin")) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+        try (InputStream in = storage.getRange(prefix + "a/one.bin", 100, 50)) {
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 100, 150));
+        }
+
+        assertThat(storage.delete(prefix + "a/one.bin")).isTrue();
+        assertThat(storage.delete(prefix + "a/one.bin")).isFalse();
+        assertThat(storage.stat(prefix + "a/one.bin")).isEmpty();
+        assertThatThrownBy(() -> storage.get(prefix + "a/one.bin")).isInstanceOf(NoSuchFileException.class);
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void listsObjectsAndPrefixes(ObjectStorage storage) throws IOException {
+        String prefix = "test-" + UUID.randomUUID() + "/";
+        storage.put(prefix + "1/thumbnail/a.png", write(randomBytes(10)));
+        storage.put(prefix + "1/renditions/b.jpg", write(randomBytes(20)));
+        storage.put(prefix + "2/resources/c.pdf", write(randomBytes(30)));
+
+        try (Stream<ObjectInfo> objects = storage.list(prefix + "1/")) {
+            assertThat(objects.map(ObjectInfo::key))
+                    .containsExactlyInAnyOrder(prefix + "1/thumbnail/a.png", prefix + "1/renditions/b.jpg");
+        }
+        assertThat(storage.listPrefixes(prefix)).containsExactlyInAnyOrder(prefix + "1/", prefix + "2/");
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void putsLargeFilesInParts(ObjectStorage storage) throws IOException {
+        // Larger than one S3 part, so the S3 storage uploads it as a multipart upload.
+        byte[] content = randomBytes(40 * 1024 * 1024 + 123);
+        String key = "test-" + UUID.randomUUID() + "/large.bin";
+        storage.put(key, write(content));
+
+        assertThat(storage.stat(key)).hasValueSatisfying(info -> assertThat(info.size()).isEqualTo(content.length));
+        long offset = 16L * 1024 * 1024 - 10; // across a part boundary
+        try (InputStream in = storage.getRange(key, offset, 20)) {
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, (int) offset, (int) offset + 20));
+        }
+        storage.delete(key);
+    }
+
+    private static Path write(byte[] content) throws IOException {
+        Path file = temp.resolve(UUID.randomUUID().toString());
+        Files.write(file, content);
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}